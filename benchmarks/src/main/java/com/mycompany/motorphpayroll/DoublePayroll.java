@@ -0,0 +1,189 @@
+package com.mycompany.motorphpayroll;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// computeMonthlyPayroll as it was before the payroll moved to Money: the same loop, events and
+// metrics, with the pay math in double pesos and hours and the results kept as doubles.
+// MoneyKernelBenchmark runs it next to the real computeMonthlyPayroll, so the "before" number
+// is the whole entry point and not only its arithmetic.
+// The production tables no longer have a double apply(), so each table is read back once with
+// ContributionTable.bracket() into a Table below, which is the double lookup the payroll used.
+final class DoublePayroll {
+
+    // The old WeeklyPayroll fields
+    static final class Week {
+        LocalDate startDate;
+        LocalDate endDate;
+        double hoursWorked;
+        double grossSalary;
+        double lateHours;
+        double lateDeduction;
+        double sss;
+        double pagibig;
+        double philhealth;
+        double netPay;
+
+        Week(LocalDate startDate, LocalDate endDate, double hoursWorked, double grossSalary, double lateHours,
+             double lateDeduction, double sss, double pagibig, double philhealth, double netPay) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.hoursWorked = hoursWorked;
+            this.grossSalary = grossSalary;
+            this.lateHours = lateHours;
+            this.lateDeduction = lateDeduction;
+            this.sss = sss;
+            this.pagibig = pagibig;
+            this.philhealth = philhealth;
+            this.netPay = netPay;
+        }
+    }
+
+    // The old MonthlyPayroll fields
+    static final class Result {
+        Employee employee;
+        int year;
+        Month month;
+        Week[] weeks;
+        double totalNet;
+        double withholdingTax;
+        double allowances;
+        double finalNet;
+
+        Result(Employee employee, int year, Month month, Week[] weeks, double totalNet,
+               double withholdingTax, double allowances, double finalNet) {
+            this.employee = employee;
+            this.year = year;
+            this.month = month;
+            this.weeks = weeks;
+            this.totalNet = totalNet;
+            this.withholdingTax = withholdingTax;
+            this.allowances = allowances;
+            this.finalNet = finalNet;
+        }
+    }
+
+    // The old ContributionTable.apply(double)
+    static final class Table {
+        private final double[] minimums;
+        private final double[] maximums;
+        private final double[] fixedAmounts;
+        private final double[] rates;
+        private final double[] excessOver;
+
+        Table(ContributionTable table) {
+            int n = table.size();
+            minimums = new double[n];
+            maximums = new double[n];
+            fixedAmounts = new double[n];
+            rates = new double[n];
+            excessOver = new double[n];
+            for (int i = 0; i < n; i++) {
+                double[] bracket = table.bracket(i);
+                minimums[i] = bracket[0];
+                maximums[i] = bracket[1];
+                fixedAmounts[i] = bracket[2];
+                rates[i] = bracket[3];
+                excessOver[i] = bracket[4];
+            }
+        }
+
+        double apply(double amount) {
+            int low = 0;
+            int high = maximums.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (maximums[mid] < amount) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low == maximums.length || amount < minimums[low]) {
+                return 0;
+            }
+            return fixedAmounts[low] + (amount - excessOver[low]) * rates[low];
+        }
+    }
+
+    private final ContributionRules rules;
+    // Filled before the benchmark starts, then only read, so it can be shared by every thread
+    private final Map<ContributionTable, Table> tables = new IdentityHashMap<>();
+
+    // Reads back every table version that pays any of the given months
+    DoublePayroll(ContributionRules rules, int year, Month fromMonth, Month toMonth) {
+        this.rules = rules;
+        for (int m = 0; m <= toMonth.getValue() - fromMonth.getValue(); m++) {
+            LocalDate firstMonday = MotorPHPayroll.getFirstMondayOfMonth(year, fromMonth.plus(m).getValue());
+            LocalDate payDate = firstMonday.plusWeeks(3).plusDays(4);
+            for (ContributionRules.Kind kind : ContributionRules.Kind.values()) {
+                tables.computeIfAbsent(rules.table(kind, payDate), Table::new);
+            }
+        }
+    }
+
+    private Table table(ContributionRules.Kind kind, LocalDate date) {
+        return tables.get(rules.table(kind, date));
+    }
+
+    Result computeMonthlyPayroll(Employee employee, EmployeeAttendance attendance, int year, Month month) {
+        PayrollEvents.EmployeePayroll event = new PayrollEvents.EmployeePayroll();
+        event.begin();
+
+        LocalDate firstMonday = MotorPHPayroll.getFirstMondayOfMonth(year, month.getValue());
+        Week[] weeks = new Week[4];
+
+        double totalNet = 0.0;
+        double tax = 0;
+
+        for (int weekOffset = 0; weekOffset < 4; weekOffset++) {
+            LocalDate startDate = firstMonday.plusWeeks(weekOffset);
+            LocalDate endDate = startDate.plusDays(4);
+
+            double weeklyHours = 0;
+            double totalDeductedHours = 0;
+
+            long aggregationStart = PayrollMetrics.start();
+            if (attendance != null) {
+                weeklyHours = attendance.hoursWorked(startDate, endDate);
+                totalDeductedHours = attendance.deductedHours(startDate, endDate);
+            }
+            PayrollMetrics.phase(PayrollMetrics.Phase.AGGREGATION, aggregationStart);
+
+            double grossSalary = weeklyHours * employee.hourlyRate;
+            double deductionForLate = totalDeductedHours * employee.hourlyRate;
+
+            double sss = 0, pagibig = 0, philhealth = 0;
+            long deductionStart = PayrollMetrics.start();
+            if (weekOffset == 3) {
+                sss = table(ContributionRules.Kind.SSS, endDate).apply(grossSalary * 2);
+                pagibig = table(ContributionRules.Kind.PAGIBIG, endDate).apply(grossSalary);
+                philhealth = table(ContributionRules.Kind.PHILHEALTH, endDate).apply(grossSalary);
+                tax = table(ContributionRules.Kind.WITHHOLDING_TAX, endDate).apply(employee.basicSalary);
+            }
+            PayrollMetrics.phase(PayrollMetrics.Phase.DEDUCTIONS, deductionStart);
+
+            double totalDeduction = sss + pagibig + philhealth + deductionForLate;
+            double netPay = grossSalary - totalDeduction;
+            totalNet += netPay;
+
+            weeks[weekOffset] = new Week(startDate, endDate, weeklyHours, grossSalary,
+                    totalDeductedHours, deductionForLate, sss, pagibig, philhealth, netPay);
+        }
+
+        double allowances = employee.riceSubsidy + employee.phoneAllowance + employee.clothingAllowance;
+        double finalNet = totalNet - tax + allowances;
+
+        PayrollMetrics.payrollComputed();
+        if (event.shouldCommit()) {
+            event.employeeId = employee.empId;
+            event.year = year;
+            event.month = month.name();
+            event.finalNet = finalNet;
+            event.commit();
+        }
+        return new Result(employee, year, month, weeks, totalNet, tax, allowances, finalNet);
+    }
+}
@@ -0,0 +1,158 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// This class measures how much heap each in-memory model of the payroll data takes, and how
+// much GC work computing a month over it causes
+//   legacy  - HashMap<String, Employee> + HashMap<String, List<EmployeeRecord>> with a String date
+//             per punch, the model main used before AttendanceIndex (rebuilt here for comparison)
+//   index   - HashMap<String, Employee> + AttendanceIndex (three arrays per employee)
+//   store   - PayrollStore (one set of primitive columns for everyone)
+// Each model is built, the heap is garbage collected, and the growth of the used heap is the
+// footprint. It is not a JMH benchmark because JMH measures time, not retained memory.
+// Usage: HeapFootprint <S35|S10K|S1M>   (S1M needs about -Xmx8g for the legacy model)
+public class HeapFootprint {
+
+    // One punch the way the old code kept it
+    static class LegacyRecord {
+        String date;
+        double hoursWorked;
+        double deductedHours;
+
+        LegacyRecord(String date, double hoursWorked, double deductedHours) {
+            this.date = date;
+            this.hoursWorked = hoursWorked;
+            this.deductedHours = deductedHours;
+        }
+    }
+
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("M/d/yy");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        PayrollDataGenerator.Scale scale = PayrollDataGenerator.Scale.valueOf(args.length > 0 ? args[0].toUpperCase() : "S10K");
+        Path directory = PayrollDataGenerator.cachedDirectory(scale);
+        String employeeFile = directory.resolve("employee_data.csv").toString();
+        String attendanceFile = directory.resolve("attendance_record.csv").toString();
+
+        long before = usedHeapAfterGc();
+        HashMap<String, Employee> employees = MotorPHPayroll.loadEmployeeData(employeeFile);
+        AttendanceIndex index = ParallelAttendanceLoader.load(attendanceFile);
+        long indexBytes = usedHeapAfterGc() - before;
+        long records = 0;
+        for (String id : index.employeeIds()) {
+            records += index.get(id).size();
+        }
+
+        before = usedHeapAfterGc();
+        HashMap<String, List<LegacyRecord>> legacy = legacyModel(index);
+        long legacyBytes = usedHeapAfterGc() - before + employeeMapBytes(employees);
+        Reference.reachabilityFence(legacy);
+
+        // Built from a copy of the employees, so the names it keeps are its own and are counted
+        before = usedHeapAfterGc();
+        PayrollStore store = PayrollStore.of(copyOf(employees), index);
+        long storeBytes = usedHeapAfterGc() - before;
+
+        System.out.printf("Scale %s: %d employees, %d attendance records%n", scale, employees.size(), records);
+        print("legacy", legacyBytes, records);
+        print("index", indexBytes, records);
+        print("store", storeBytes, records);
+
+        // GC work of computing every employee for the last month of data, on one thread,
+        // looked up by ID in the index and by number in the store
+        LocalDate lastMonth = PayrollDataGenerator.FIRST_DAY.plusMonths(scale.months - 1);
+        ContributionRules rules = ContributionRules.defaults();
+        List<String> ids = new ArrayList<>(employees.keySet());
+        Collections.sort(ids);
+        gcDuringBatch("index", () -> {
+            for (String id : ids) {
+                MotorPHPayroll.computeMonthlyPayroll(employees.get(id), index.get(id), rules,
+                        lastMonth.getYear(), lastMonth.getMonth());
+            }
+        });
+        gcDuringBatch("store", () -> {
+            for (int e = 0; e < store.size(); e++) {
+                if (store.hasEmployee(e)) {
+                    MotorPHPayroll.computeMonthlyPayroll(store.employee(e), store.attendance(e), rules,
+                            lastMonth.getYear(), lastMonth.getMonth());
+                }
+            }
+        });
+        Reference.reachabilityFence(store);
+        Reference.reachabilityFence(index);
+    }
+
+    private static HashMap<String, List<LegacyRecord>> legacyModel(AttendanceIndex index) {
+        HashMap<String, List<LegacyRecord>> legacy = new HashMap<>();
+        for (String id : index.employeeIds()) {
+            EmployeeAttendance attendance = index.get(id);
+            List<LegacyRecord> records = new ArrayList<>();
+            for (int i = 0; i < attendance.size(); i++) {
+                // A new String per record, like reading row[3] from the CSV
+                String date = LocalDate.ofEpochDay(attendance.epochDay(i)).format(dateFormatter);
+                records.add(new LegacyRecord(date,
+                        (attendance.workedBefore(i + 1) - attendance.workedBefore(i)) / 60.0,
+                        (attendance.lateBefore(i + 1) - attendance.lateBefore(i)) / 60.0));
+            }
+            legacy.put(new String(id), records);
+        }
+        return legacy;
+    }
+
+    // The legacy model keeps the same employee map as the index model; its size is measured on a copy and added
+    private static long employeeMapBytes(HashMap<String, Employee> employees) throws InterruptedException {
+        long before = usedHeapAfterGc();
+        HashMap<String, Employee> copy = copyOf(employees);
+        long bytes = usedHeapAfterGc() - before;
+        Reference.reachabilityFence(copy);
+        return bytes;
+    }
+
+    // A copy that shares no Strings with the original
+    private static HashMap<String, Employee> copyOf(HashMap<String, Employee> employees) {
+        HashMap<String, Employee> copy = new HashMap<>();
+        for (Employee e : employees.values()) {
+            copy.put(new String(e.empId), new Employee(new String(e.empId), new String(e.lastName), new String(e.firstName),
+                    new String(e.birthday), new String(e.status), new String(e.position), new String(e.supervisor),
+                    e.hourlyRate, e.riceSubsidy, e.phoneAllowance, e.clothingAllowance, e.basicSalary));
+        }
+        return copy;
+    }
+
+    private static void gcDuringBatch(String model, Runnable batch) throws InterruptedException {
+        usedHeapAfterGc();
+        long collections = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections -= gc.getCollectionCount();
+            millis -= gc.getCollectionTime();
+        }
+        long startNanos = System.nanoTime();
+        batch.run();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += gc.getCollectionCount();
+            millis += gc.getCollectionTime();
+        }
+        System.out.printf("%-7s batch: %.3f s, %d GCs, %d ms in GC%n", model, seconds, collections, millis);
+    }
+
+    private static void print(String model, long bytes, long records) {
+        System.out.printf("%-7s %,14d bytes  %8.1f bytes per record%n", model, bytes, records == 0 ? 0.0 : (double) bytes / records);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,83 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Time to load each CSV at each scale. One call is a whole file, so single-shot timing is used.
+// loadAttendanceDataOpenCsv is the "before": the OpenCSV loader the program started with.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class LoaderBenchmark {
+
+    @Param({"S35", "S10K", "S1M"})
+    PayrollDataGenerator.Scale scale;
+
+    String employeeFile;
+    String attendanceFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = PayrollDataGenerator.cachedDirectory(scale);
+        employeeFile = directory.resolve("employee_data.csv").toString();
+        attendanceFile = directory.resolve("attendance_record.csv").toString();
+
+        // The faster loaders are only worth measuring if they read the same thing as the OpenCSV loader
+        AttendanceIndex expected = MotorPHPayroll.loadAttendanceData(attendanceFile);
+        if (!sameTotals(expected, MappedAttendanceParser.load(attendanceFile))) {
+            throw new IllegalStateException("MappedAttendanceParser does not match loadAttendanceData");
+        }
+        // The parallel result must not depend on how the file was cut
+        for (int chunks : new int[] {1, 3, 7, 64, Runtime.getRuntime().availableProcessors()}) {
+            if (!sameTotals(expected, ParallelAttendanceLoader.load(attendanceFile, chunks))) {
+                throw new IllegalStateException("ParallelAttendanceLoader with " + chunks + " chunks does not match loadAttendanceData");
+            }
+        }
+    }
+
+    @Benchmark
+    public Object loadEmployeeData() {
+        return MotorPHPayroll.loadEmployeeData(employeeFile);
+    }
+
+    @Benchmark
+    public Object loadAttendanceDataOpenCsv() {
+        return MotorPHPayroll.loadAttendanceData(attendanceFile);
+    }
+
+    @Benchmark
+    public Object loadAttendanceDataMapped() {
+        return MappedAttendanceParser.load(attendanceFile);
+    }
+
+    @Benchmark
+    public Object loadAttendanceDataParallel() {
+        return ParallelAttendanceLoader.load(attendanceFile);
+    }
+
+    static boolean sameTotals(AttendanceIndex a, AttendanceIndex b) {
+        if (!a.employeeIds().equals(b.employeeIds())) {
+            return false;
+        }
+        for (String id : a.employeeIds()) {
+            EmployeeAttendance x = a.get(id);
+            EmployeeAttendance y = b.get(id);
+            if (x.size() != y.size()) {
+                return false;
+            }
+            for (int i = 0; i < x.size(); i++) {
+                if (x.epochDay(i) != y.epochDay(i)
+                        || x.workedBefore(i + 1) != y.workedBefore(i + 1)
+                        || x.lateBefore(i + 1) != y.lateBefore(i + 1)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// The payroll of every employee for one month through the real entry points:
+// MotorPHPayroll.computeMonthlyPayroll (centavos and minutes with Money) and the same method as it
+// was before Money (DoublePayroll, double pesos and hours). Both read the same PayrollStore and build
+// their result objects, record their events and metrics, so the difference is the whole change.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class MoneyKernelBenchmark {
+
+    @Param({"S10K", "S1M"})
+    PayrollDataGenerator.Scale scale;
+
+    PayrollStore store;
+    Employee[] employees;
+    EmployeeAttendance[] attendance;
+    ContributionRules rules;
+    DoublePayroll doublePayroll;
+    int year;
+    Month month;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = PayrollDataGenerator.cachedDirectory(scale);
+        PayrollData data = PayrollData.loadFromCsv(directory.resolve("employee_data.csv").toString(),
+                directory.resolve("attendance_record.csv").toString());
+        store = PayrollStore.of(data.employeeData, data.attendanceData);
+        employees = new Employee[store.size()];
+        attendance = new EmployeeAttendance[store.size()];
+        for (int e = 0; e < store.size(); e++) {
+            employees[e] = store.employee(e);
+            attendance[e] = store.attendance(e);
+        }
+        rules = data.contributionRules;
+
+        LocalDate lastMonth = PayrollDataGenerator.FIRST_DAY.plusMonths(scale.months - 1);
+        year = lastMonth.getYear();
+        month = lastMonth.getMonth();
+        doublePayroll = new DoublePayroll(rules, year, month, month);
+    }
+
+    // After: the company's final net in centavos
+    @Benchmark
+    public long computeMonthlyPayroll() {
+        long companyNet = 0;
+        for (int e = 0; e < employees.length; e++) {
+            if (employees[e] != null) {
+                companyNet += MotorPHPayroll.computeMonthlyPayroll(employees[e], attendance[e], rules, year, month).finalNet;
+            }
+        }
+        return companyNet;
+    }
+
+    // Before: the company's final net in pesos
+    @Benchmark
+    public double doubleComputeMonthlyPayroll() {
+        double companyNet = 0;
+        for (int e = 0; e < employees.length; e++) {
+            if (employees[e] != null) {
+                companyNet += doublePayroll.computeMonthlyPayroll(employees[e], attendance[e], year, month).finalNet;
+            }
+        }
+        return companyNet;
+    }
+}
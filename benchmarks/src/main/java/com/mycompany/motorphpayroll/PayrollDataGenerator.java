@@ -0,0 +1,119 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Random;
+
+// This class writes employee_data.csv and attendance_record.csv in the same layout as the
+// files in src/main/java/resources, at a few fixed sizes
+// The random numbers always start from the same seed, so every run writes the same files
+// Usage: PayrollDataGenerator <S35|S10K|S1M> <output directory>
+public class PayrollDataGenerator {
+
+    // employees x months = employee-months of attendance, starting in January 2024
+    public enum Scale {
+        S35(35, 1),          // about the size of the real data
+        S10K(10_000, 1),     // a mid-size company for one month
+        S1M(10_000, 100);    // the same company with 100 months of history
+
+        final int employees;
+        final int months;
+
+        Scale(int employees, int months) {
+            this.employees = employees;
+            this.months = months;
+        }
+    }
+
+    static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final double[] BASIC_SALARIES = {22500, 24000, 38850, 42975, 52670, 60000, 90000};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: PayrollDataGenerator <S35|S10K|S1M> <output directory>");
+            return;
+        }
+        Scale scale = Scale.valueOf(args[0].toUpperCase());
+        Path directory = Path.of(args[1]);
+        Files.createDirectories(directory);
+        write(scale, directory);
+        System.out.println("Wrote " + scale + " data to " + directory.toAbsolutePath());
+    }
+
+    static void write(Scale scale, Path directory) throws IOException {
+        writeEmployees(directory.resolve("employee_data.csv"), scale.employees);
+        writeAttendance(directory.resolve("attendance_record.csv"), scale.employees, scale.months);
+    }
+
+    // The benchmarks share one copy of each scale under the temp directory, so the
+    // 1M-employee-month files are only written once
+    static Path cachedDirectory(Scale scale) throws IOException {
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), "motorph-bench", scale.name());
+        Path done = directory.resolve(".complete");
+        if (!Files.exists(done)) {
+            Files.createDirectories(directory);
+            write(scale, directory);
+            Files.createFile(done);
+        }
+        return directory;
+    }
+
+    static String employeeId(int index) {
+        return Integer.toString(10001 + index);
+    }
+
+    static void writeEmployees(Path file, int employees) throws IOException {
+        Random random = new Random(1);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("Employee ID,Last Name,First Name,Birthday,Address,Phone Number,SSS,Philhealth,TIN,Pag-ibig,"
+                    + "Status,Position,Immediate Supervisor,Basic Salary,Rice Subsidy,Phone Allowance,Clothing Allowance,"
+                    + "Gross Semi Monthly Rate,Hourly Rate\n");
+            for (int i = 0; i < employees; i++) {
+                double basicSalary = BASIC_SALARIES[random.nextInt(BASIC_SALARIES.length)];
+                double hourlyRate = Math.round(basicSalary / 168 * 100) / 100.0;
+                // Everyone reports to someone hired before them, the first employee to nobody
+                String supervisor = i == 0 ? "N/A" : "\"Lastname" + random.nextInt(Math.max(1, i / 4 + 1)) + ", Firstname\"";
+
+                writer.write(employeeId(i) + ",Lastname" + i + ",Firstname,"
+                        + (1 + random.nextInt(12)) + "/" + (1 + random.nextInt(28)) + "/" + (80 + random.nextInt(20)) + ","
+                        + "\"" + (1 + random.nextInt(999)) + " Sample Street, Makati City\","
+                        + "966-860-" + String.format("%03d", i % 1000) + ",44-4506057-3,820127000000,442-605-657-000,691295000000,"
+                        + (i % 5 == 0 ? "Probationary" : "Regular") + ",Employee " + i + "," + supervisor + ","
+                        + (long) basicSalary + ",1500," + (500 + 500 * random.nextInt(4)) + "," + (500 + 250 * random.nextInt(3)) + ","
+                        + (long) (basicSalary / 2) + "," + hourlyRate + "\n");
+            }
+        }
+    }
+
+    // One row per employee per weekday, sorted by date like the real punch-clock export
+    static void writeAttendance(Path file, int employees, int months) throws IOException {
+        Random random = new Random(2);
+        LocalDate end = FIRST_DAY.plusMonths(months);
+        StringBuilder line = new StringBuilder(64);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("Employee ID,Last Name,First Name,Date,Log In,Log Out\n");
+            for (LocalDate date = FIRST_DAY; date.isBefore(end); date = date.plusDays(1)) {
+                if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                    continue;
+                }
+                String dateText = date.getMonthValue() + "/" + date.getDayOfMonth() + "/" + String.format("%02d", date.getYear() % 100);
+                for (int i = 0; i < employees; i++) {
+                    // Most people come in between 7:30 and 10:30, so some rows are late
+                    int login = 7 * 60 + 30 + random.nextInt(180);
+                    int logout = login + 8 * 60 + random.nextInt(120);
+                    line.setLength(0);
+                    line.append(employeeId(i)).append(",Lastname").append(i).append(",Firstname,").append(dateText)
+                            .append(',').append(login / 60).append(':').append(login % 60 < 10 ? "0" : "").append(login % 60)
+                            .append(',').append(logout / 60).append(':').append(logout % 60 < 10 ? "0" : "").append(logout % 60)
+                            .append('\n');
+                    writer.append(line);
+                }
+            }
+        }
+    }
+}
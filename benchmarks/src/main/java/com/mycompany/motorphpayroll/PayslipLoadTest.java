@@ -0,0 +1,135 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// This class is a payday load test for the payslip server
+// Many clients each ask for a run of random payslips as fast as they can, like employees
+// all opening their payslip at once, then the throughput and the latency percentiles are printed.
+// It is not a JMH benchmark because what matters is the latency seen by many clients at the same time.
+// Usage: PayslipLoadTest <S35|S10K|S1M|http://host:port> [clients] [requests per client]
+//   With a scale, a server is started in this JVM on the generated data for that scale.
+//   With a URL, an already running server (MotorPHPayroll serve) on the real data is tested.
+public class PayslipLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: PayslipLoadTest <S35|S10K|S1M|http://host:port> [clients] [requests per client]");
+            return;
+        }
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int requestsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        LocalServer server = null;
+        String baseUrl;
+        int employees;
+        int months;
+        if (args[0].startsWith("http")) {
+            baseUrl = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+            employees = 34;  // the real data has employees 10001 to 10034
+            months = 12;
+        } else {
+            PayrollDataGenerator.Scale scale = PayrollDataGenerator.Scale.valueOf(args[0].toUpperCase());
+            server = startLocalServer(scale);
+            baseUrl = "http://localhost:" + server.port;
+            employees = scale.employees;
+            months = Math.min(12, scale.months);
+        }
+
+        try {
+            run(baseUrl, employees, months, clients, requestsPerClient);
+            if (server != null) {
+                PayslipCache cache = server.server.cache;
+                System.out.printf("Payslip cache: %d hits, %d misses, %d evictions%n",
+                        cache.hits.sum(), cache.misses.sum(), cache.evictions.sum());
+            }
+        } finally {
+            if (server != null) {
+                server.server.stop();
+            }
+        }
+    }
+
+    private static LocalServer startLocalServer(PayrollDataGenerator.Scale scale) throws IOException {
+        Path directory = PayrollDataGenerator.cachedDirectory(scale);
+        PayrollData data = PayrollData.load(directory.resolve("employee_data.csv").toString(),
+                directory.resolve("attendance_record.csv").toString());
+        PayrollServer server = new PayrollServer(data, PayrollDataGenerator.FIRST_DAY.getYear());
+        return new LocalServer(server, server.start(0));
+    }
+
+    private static void run(String baseUrl, int employees, int months, int clients, int requestsPerClient) {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        long[] latencies = new long[clients * requestsPerClient];
+        AtomicInteger errors = new AtomicInteger();
+
+        long startNanos = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int clientIndex = c;
+                executor.submit(() -> {
+                    Random random = new Random(clientIndex);
+                    for (int r = 0; r < requestsPerClient; r++) {
+                        String employeeId = PayrollDataGenerator.employeeId(random.nextInt(employees));
+                        int month = 1 + random.nextInt(months);
+                        URI uri = URI.create(baseUrl + "/payslips/" + employeeId + "/" + month);
+                        long requestStart = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                                    HttpResponse.BodyHandlers.ofString());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        latencies[clientIndex * requestsPerClient + r] = System.nanoTime() - requestStart;
+                    }
+                });
+            }
+        }  // close() waits for every client to finish
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("Clients: %d, requests: %d, errors: %d%n", clients, latencies.length, errors.get());
+        System.out.printf("Wall-clock time: %.3f s, throughput: %.1f requests per second%n",
+                seconds, latencies.length / Math.max(seconds, 1e-9));
+        System.out.printf("Latency ms: p50 %.2f, p95 %.2f, p99 %.2f, max %.2f%n",
+                percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                latencies[latencies.length - 1] / 1e6);
+    }
+
+    // The latencies must already be sorted
+    private static double percentile(long[] sortedLatencies, int percent) {
+        int index = (int) Math.ceil(sortedLatencies.length * percent / 100.0) - 1;
+        return sortedLatencies[Math.max(0, index)] / 1e6;
+    }
+
+    private static class LocalServer {
+        final PayrollServer server;
+        final int port;
+
+        LocalServer(PayrollServer server, int port) {
+            this.server = server;
+            this.port = port;
+        }
+    }
+}
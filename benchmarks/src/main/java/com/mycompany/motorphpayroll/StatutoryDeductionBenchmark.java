@@ -0,0 +1,68 @@
+package com.mycompany.motorphpayroll;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Cost of one SSS lookup and one withholding tax calculation, over salaries spread across all brackets
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatutoryDeductionBenchmark {
+
+    private static final int SALARIES = 1024;
+
+    long[] salaries;  // in centavos, like computeMonthlyPayroll passes them
+    int next;
+    ContributionRules rules = ContributionRules.defaults();
+    LocalDate payDate = LocalDate.of(2024, 6, 28);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(3);
+        salaries = new long[SALARIES];
+        for (int i = 0; i < SALARIES; i++) {
+            salaries[i] = Money.centavos(random.nextDouble() * 200_000);
+        }
+    }
+
+    private long nextSalary() {
+        next = (next + 1) & (SALARIES - 1);
+        return salaries[next];
+    }
+
+    @Benchmark
+    public long calculateSSS() {
+        return MotorPHPayroll.calculateSSS(rules, payDate, nextSalary());
+    }
+
+    @Benchmark
+    public long calculateWithholdingTax() {
+        return MotorPHPayroll.calculateWithholdingTax(rules, payDate, nextSalary());
+    }
+
+    // All four deductions of a 4th week, with the tables picked by pay date like computeMonthlyPayroll does
+    @Benchmark
+    public long allDeductionsByPayDate() {
+        long gross = nextSalary() / 4;
+        return MotorPHPayroll.calculateSSS(rules, payDate, gross * 2)
+                + rules.table(ContributionRules.Kind.PAGIBIG, payDate).apply(gross)
+                + rules.table(ContributionRules.Kind.PHILHEALTH, payDate).apply(gross)
+                + MotorPHPayroll.calculateWithholdingTax(rules, payDate, gross * 4);
+    }
+
+    // Both over the whole salary table, so branch prediction can't learn a single bracket
+    @Benchmark
+    @OperationsPerInvocation(SALARIES)
+    public void allBrackets(Blackhole blackhole) {
+        for (long salary : salaries) {
+            blackhole.consume(MotorPHPayroll.calculateSSS(rules, payDate, salary));
+            blackhole.consume(MotorPHPayroll.calculateWithholdingTax(rules, payDate, salary));
+        }
+    }
+}
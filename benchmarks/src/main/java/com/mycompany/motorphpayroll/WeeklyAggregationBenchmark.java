@@ -0,0 +1,151 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The four-week payroll loop (computeMonthlyPayroll) for every employee, for the last month of data.
+// With S1M each employee has 100 months of history, which shows how the lookup cost grows with tenure.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class WeeklyAggregationBenchmark {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("M/d/yy");
+
+    @Param({"S35", "S10K", "S1M"})
+    PayrollDataGenerator.Scale scale;
+
+    List<Employee> employees;
+    AttendanceIndex attendance;
+    PayrollStore store;
+    ContributionRules rules;
+    Map<String, List<ScanRecord>> scanRecords;
+    int year;
+    Month month;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = PayrollDataGenerator.cachedDirectory(scale);
+        PayrollData data = PayrollData.loadFromCsv(directory.resolve("employee_data.csv").toString(),
+                directory.resolve("attendance_record.csv").toString());
+        employees = new ArrayList<>(data.employeeData.values());
+        employees.sort(Comparator.comparing(e -> e.empId));
+        attendance = data.attendanceData;
+        store = PayrollStore.of(data.employeeData, attendance);
+        rules = data.contributionRules;
+        scanRecords = scanRecords(attendance);
+
+        LocalDate lastMonth = PayrollDataGenerator.FIRST_DAY.plusMonths(scale.months - 1);
+        year = lastMonth.getYear();
+        month = lastMonth.getMonth();
+    }
+
+    @Benchmark
+    public void allEmployeesOneMonth(Blackhole blackhole) {
+        for (Employee employee : employees) {
+            blackhole.consume(MotorPHPayroll.computeMonthlyPayroll(employee, attendance.get(employee.empId), rules, year, month));
+        }
+    }
+
+    // The same loop, with employees looked up by number in a PayrollStore instead of by ID
+    @Benchmark
+    public void allEmployeesOneMonthStore(Blackhole blackhole) {
+        for (int e = 0; e < store.size(); e++) {
+            if (store.hasEmployee(e)) {
+                blackhole.consume(MotorPHPayroll.computeMonthlyPayroll(store.employee(e), store.attendance(e), rules, year, month));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object batchAllEmployeesOneMonth() {
+        return PayrollBatch.computeAll(store, rules, year, month, month);
+    }
+
+    // Before the date index: every week went through all of the employee's records and parsed
+    // each date again, like the first version of main did. Only the hours are added up here,
+    // weeklyHoursIndexed below is the same sums with the index.
+    @Benchmark
+    public double weeklyHoursScan() {
+        LocalDate firstMonday = MotorPHPayroll.getFirstMondayOfMonth(year, month.getValue());
+        double total = 0;
+        for (Employee employee : employees) {
+            List<ScanRecord> records = scanRecords.get(employee.empId);
+            for (int weekOffset = 0; weekOffset < 4; weekOffset++) {
+                LocalDate startDate = firstMonday.plusWeeks(weekOffset);
+                LocalDate endDate = startDate.plusDays(4);
+                double weeklyHours = 0;
+                double totalDeductedHours = 0;
+                if (records != null) {
+                    for (ScanRecord record : records) {
+                        LocalDate recordDate = LocalDate.parse(record.date, DATE_FORMAT);
+                        if (!recordDate.isBefore(startDate) && !recordDate.isAfter(endDate)) {
+                            weeklyHours += record.hoursWorked;
+                            totalDeductedHours += record.deductedHours;
+                        }
+                    }
+                }
+                total += weeklyHours + totalDeductedHours;
+            }
+        }
+        return total;
+    }
+
+    // After: two binary searches and two subtractions per week
+    @Benchmark
+    public double weeklyHoursIndexed() {
+        LocalDate firstMonday = MotorPHPayroll.getFirstMondayOfMonth(year, month.getValue());
+        double total = 0;
+        for (Employee employee : employees) {
+            EmployeeAttendance records = attendance.get(employee.empId);
+            for (int weekOffset = 0; weekOffset < 4; weekOffset++) {
+                LocalDate startDate = firstMonday.plusWeeks(weekOffset);
+                LocalDate endDate = startDate.plusDays(4);
+                if (records != null) {
+                    total += records.hoursWorked(startDate, endDate) + records.deductedHours(startDate, endDate);
+                }
+            }
+        }
+        return total;
+    }
+
+    // One attendance row the way it was kept before the index: the date as text and the hours as doubles
+    static final class ScanRecord {
+        final String date;
+        final double hoursWorked;
+        final double deductedHours;
+
+        ScanRecord(String date, double hoursWorked, double deductedHours) {
+            this.date = date;
+            this.hoursWorked = hoursWorked;
+            this.deductedHours = deductedHours;
+        }
+    }
+
+    // The old per-employee record lists, in file order, made from the loaded index
+    static Map<String, List<ScanRecord>> scanRecords(AttendanceIndex attendance) {
+        Map<String, List<ScanRecord>> records = new HashMap<>();
+        for (String id : attendance.employeeIds()) {
+            EmployeeAttendance rows = attendance.get(id);
+            List<ScanRecord> list = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                long worked = rows.workedBefore(i + 1) - rows.workedBefore(i);
+                long late = rows.lateBefore(i + 1) - rows.lateBefore(i);
+                list.add(new ScanRecord(LocalDate.ofEpochDay(rows.epochDay(i)).format(DATE_FORMAT),
+                        Money.hours(worked), Money.hours(late)));
+            }
+            records.put(id, list);
+        }
+        return records;
+    }
+}
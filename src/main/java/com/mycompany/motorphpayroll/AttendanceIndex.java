@@ -0,0 +1,244 @@
+package com.mycompany.motorphpayroll;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+// This class replaces the old HashMap<String, List<EmployeeRecord>>
+// The key is still the employee ID, but each value is an EmployeeAttendance
+// that answers "how many hours between these two dates" with two binary searches
+class AttendanceIndex {
+    private final Map<String, EmployeeAttendance> attendanceMap;
+    private final Set<String> employeeIds;
+
+    // Only set when the index comes from a snapshot: it reads one employee from the mapped
+    // snapshot file the first time that employee is needed
+    private final Function<String, EmployeeAttendance> loader;
+
+    AttendanceIndex(HashMap<String, EmployeeAttendance> attendanceMap) {
+        this.attendanceMap = new ConcurrentHashMap<>(attendanceMap);
+        this.employeeIds = this.attendanceMap.keySet();
+        this.loader = null;
+    }
+
+    AttendanceIndex(Set<String> employeeIds, Function<String, EmployeeAttendance> loader) {
+        this.attendanceMap = new ConcurrentHashMap<>();
+        this.employeeIds = ConcurrentHashMap.newKeySet();
+        this.employeeIds.addAll(employeeIds);
+        this.loader = loader;
+    }
+
+    // Returns null if the employee has no attendance at all
+    EmployeeAttendance get(String employeeId) {
+        EmployeeAttendance attendance = attendanceMap.get(employeeId);
+        if (attendance == null && loader != null && employeeIds.contains(employeeId)) {
+            attendance = attendanceMap.computeIfAbsent(employeeId, loader);
+        }
+        return attendance;
+    }
+
+    Set<String> employeeIds() {
+        return employeeIds;
+    }
+
+    int size() {
+        return employeeIds.size();
+    }
+
+    // Adds rows that were read after the index was built (the watch mode tails the file)
+    // Rows dated on or after an employee's last record carry the running totals on in place
+    // (EmployeeAttendance.appended), so a batch costs only its own rows. Only an employee with a row
+    // dated before their last record has all their rows sorted again.
+    // Each changed employee gets a new EmployeeAttendance object, so another thread reading the
+    // index sees either the old totals or the new ones, never half
+    void append(Builder newRows) {
+        for (Map.Entry<String, Rows> entry : newRows.rowsByEmployee.entrySet()) {
+            String employeeId = entry.getKey();
+            Rows added = entry.getValue();
+            EmployeeAttendance current = get(employeeId);
+            EmployeeAttendance updated = current == null
+                    ? added.toAttendance()
+                    : current.appended(added.epochDays, added.worked, added.late, added.size);
+            if (updated == null) {
+                updated = Rows.concat(List.of(Rows.of(current), added)).toAttendance();
+            }
+            attendanceMap.put(employeeId, updated);
+            if (loader != null) {
+                // Without a loader employeeIds is the map's own key set, so the put above added it
+                employeeIds.add(employeeId);
+            }
+        }
+    }
+
+    // Joins one employee's attendance from several parts (e.g. two month partitions) into one
+    // The parts may be in any order, the rows are sorted by date again
+    static EmployeeAttendance join(List<EmployeeAttendance> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        List<Rows> rows = new ArrayList<>(parts.size());
+        for (EmployeeAttendance part : parts) {
+            rows.add(Rows.of(part));
+        }
+        return Rows.concat(rows).toAttendance();
+    }
+
+    // The loaders add one row at a time in file order, then call build() once at the end
+    static class Builder {
+        private final HashMap<String, Rows> rowsByEmployee = new HashMap<>();
+
+        void add(String employeeId, int epochDay, int workedMinutes, int lateMinutes) {
+            Rows rows = rowsByEmployee.get(employeeId);
+            if (rows == null) {
+                rows = new Rows();
+                rowsByEmployee.put(employeeId, rows);
+            }
+            rows.add(epochDay, workedMinutes, lateMinutes);
+        }
+
+        Set<String> employeeIds() {
+            return rowsByEmployee.keySet();
+        }
+
+        // The number of rows added so far
+        long rowCount() {
+            long count = 0;
+            for (Rows rows : rowsByEmployee.values()) {
+                count += rows.size;
+            }
+            return count;
+        }
+
+        // The dates added for one employee, in the order they were added
+        int[] epochDays(String employeeId) {
+            Rows rows = rowsByEmployee.get(employeeId);
+            return rows == null ? new int[0] : Arrays.copyOf(rows.epochDays, rows.size);
+        }
+
+        AttendanceIndex build() {
+            HashMap<String, EmployeeAttendance> attendanceMap = new HashMap<>();
+            for (Map.Entry<String, Rows> entry : rowsByEmployee.entrySet()) {
+                attendanceMap.put(entry.getKey(), entry.getValue().toAttendance());
+            }
+            return new AttendanceIndex(attendanceMap);
+        }
+
+        // Builds one index out of builders that each read one part of the same file
+        // The parts must be given in file order: rows of the same employee are joined in that
+        // order, so the result is the same as reading the whole file with a single builder
+        // Every employee is sorted on its own, so this runs in parallel
+        static AttendanceIndex merge(List<Builder> parts) {
+            HashMap<String, List<Rows>> rowsByEmployee = new HashMap<>();
+            for (Builder part : parts) {
+                for (Map.Entry<String, Rows> entry : part.rowsByEmployee.entrySet()) {
+                    rowsByEmployee.computeIfAbsent(entry.getKey(), id -> new ArrayList<>()).add(entry.getValue());
+                }
+            }
+
+            List<String> employeeIds = new ArrayList<>(rowsByEmployee.keySet());
+            EmployeeAttendance[] merged = new EmployeeAttendance[employeeIds.size()];
+            IntStream.range(0, merged.length).parallel().forEach(i ->
+                    merged[i] = Rows.concat(rowsByEmployee.get(employeeIds.get(i))).toAttendance());
+
+            HashMap<String, EmployeeAttendance> attendanceMap = new HashMap<>();
+            for (int i = 0; i < merged.length; i++) {
+                attendanceMap.put(employeeIds.get(i), merged[i]);
+            }
+            return new AttendanceIndex(attendanceMap);
+        }
+    }
+
+    // Growable arrays for one employee while the file is being read
+    private static class Rows {
+        int[] epochDays = new int[16];
+        int[] worked = new int[16];
+        int[] late = new int[16];
+        int size;
+
+        void add(int epochDay, int workedMinutes, int lateMinutes) {
+            if (size == epochDays.length) {
+                epochDays = Arrays.copyOf(epochDays, size * 2);
+                worked = Arrays.copyOf(worked, size * 2);
+                late = Arrays.copyOf(late, size * 2);
+            }
+            epochDays[size] = epochDay;
+            worked[size] = workedMinutes;
+            late[size] = lateMinutes;
+            size++;
+        }
+
+        // Turns the running totals of an EmployeeAttendance back into one row per record
+        static Rows of(EmployeeAttendance attendance) {
+            Rows rows = new Rows();
+            int count = attendance.size();
+            rows.epochDays = Arrays.copyOfRange(attendance.epochDays, attendance.start, attendance.end);
+            rows.worked = new int[count];
+            rows.late = new int[count];
+            for (int i = 0; i < count; i++) {
+                rows.worked[i] = (int) (attendance.workedBefore(i + 1) - attendance.workedBefore(i));
+                rows.late[i] = (int) (attendance.lateBefore(i + 1) - attendance.lateBefore(i));
+            }
+            rows.size = count;
+            return rows;
+        }
+
+        // Joins the rows of several parts into one, keeping the order of the parts
+        static Rows concat(List<Rows> parts) {
+            if (parts.size() == 1) {
+                return parts.get(0);
+            }
+            Rows all = new Rows();
+            int total = 0;
+            for (Rows part : parts) {
+                total += part.size;
+            }
+            all.epochDays = new int[total];
+            all.worked = new int[total];
+            all.late = new int[total];
+            for (Rows part : parts) {
+                System.arraycopy(part.epochDays, 0, all.epochDays, all.size, part.size);
+                System.arraycopy(part.worked, 0, all.worked, all.size, part.size);
+                System.arraycopy(part.late, 0, all.late, all.size, part.size);
+                all.size += part.size;
+            }
+            return all;
+        }
+
+        EmployeeAttendance toAttendance() {
+            // Sort the rows by date, keeping file order for rows on the same day
+            // Each key holds the day in the high bits and the row number in the low bits,
+            // so a plain sort of the keys keeps the file order
+            int[] order = new int[size];
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = epochDays[i - 1] <= epochDays[i];
+            }
+            if (sorted) {
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+            } else {
+                long[] keys = new long[size];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = ((long) epochDays[i] << 32) | i;
+                }
+                Arrays.sort(keys);
+                for (int i = 0; i < size; i++) {
+                    order[i] = (int) keys[i];
+                }
+            }
+
+            int[] sortedDays = new int[size];
+            long[] workedPrefix = new long[size + 1];
+            long[] latePrefix = new long[size + 1];
+            for (int i = 0; i < size; i++) {
+                int row = order[i];
+                sortedDays[i] = epochDays[row];
+                workedPrefix[i + 1] = workedPrefix[i] + worked[row];
+                latePrefix[i + 1] = latePrefix[i] + late[row];
+            }
+            return new EmployeeAttendance(sortedDays, workedPrefix, latePrefix);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.mycompany.motorphpayroll;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// This class holds every version of the SSS, withholding tax, PhilHealth and Pag-IBIG tables
+// The tables are read from contribution_tables.csv, one bracket per row:
+//     Table,Effective Date,Minimum,Maximum,Fixed Amount,Rate,Excess Over
+// An empty Minimum or Maximum means the bracket has no lower or upper limit.
+// When the government changes a table, a new set of rows with a later Effective Date is added
+// to the file. No code change is needed.
+// At startup every version is compiled into an immutable ContributionTable, and a payroll
+// looks up the version that was in effect on its pay date.
+final class ContributionRules {
+
+    enum Kind {
+        SSS("SSS"),
+        WITHHOLDING_TAX("Withholding Tax"),
+        PHILHEALTH("PhilHealth"),
+        PAGIBIG("Pag-IBIG");
+
+        final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        // Accepts the label with any case, spaces or dashes, e.g. "Pag-IBIG", "pagibig", "WITHHOLDING TAX"
+        static Kind fromLabel(String text) {
+            String key = text.replaceAll("[^A-Za-z]", "").toUpperCase();
+            for (Kind kind : values()) {
+                if (kind.label.replaceAll("[^A-Za-z]", "").toUpperCase().equals(key)) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("Unknown contribution table: " + text);
+        }
+    }
+
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("M/d/yy");
+
+    // The tables the payroll used before they were moved to a data file, effective 1/1/24
+    private static final ContributionRules DEFAULTS = buildDefaults();
+
+    // For each kind: effective days sorted from oldest to newest, and the table for each
+    private final long[][] effectiveDays;
+    private final ContributionTable[][] tables;
+
+    private ContributionRules(long[][] effectiveDays, ContributionTable[][] tables) {
+        this.effectiveDays = effectiveDays;
+        this.tables = tables;
+    }
+
+    static ContributionRules defaults() {
+        return DEFAULTS;
+    }
+
+    // Returns the table in effect on the given date
+    // A date before the oldest version uses the oldest version
+    ContributionTable table(Kind kind, LocalDate date) {
+        long[] days = effectiveDays[kind.ordinal()];
+        long day = date.toEpochDay();
+        int index = 0;
+        for (int i = 1; i < days.length && days[i] <= day; i++) {
+            index = i;
+        }
+        return tables[kind.ordinal()][index];
+    }
+
+    // Loads the file, or returns the defaults if there is no file
+    // A file that exists but has a bad row is reported and the defaults are used instead,
+    // so a typo in the tables never silently gives wrong deductions
+    static ContributionRules load(String filePath) {
+        if (filePath == null || !Files.exists(Path.of(filePath))) {
+            return DEFAULTS;
+        }
+        try {
+            return parse(filePath);
+        } catch (IOException | CsvValidationException | IllegalArgumentException e) {
+            System.err.println("Error reading contribution tables, using the built-in 2024 tables: " + e.getMessage());
+            return DEFAULTS;
+        }
+    }
+
+    private static ContributionRules parse(String filePath) throws IOException, CsvValidationException {
+        Builder builder = new Builder();
+        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
+            String[] row;
+            boolean firstLine = true;
+            while ((row = reader.readNext()) != null) {
+                if (firstLine) {
+                    firstLine = false;
+                    continue;
+                }
+                if (row.length == 1 && row[0].trim().isEmpty()) {
+                    continue;
+                }
+                if (row.length < 7) {
+                    throw new IllegalArgumentException("Missing data in row: " + Arrays.toString(row));
+                }
+                try {
+                    builder.add(Kind.fromLabel(row[0].trim()),
+                            LocalDate.parse(row[1].trim(), dateFormatter),
+                            parseLimit(row[2], -Double.MAX_VALUE),
+                            parseLimit(row[3], Double.MAX_VALUE),
+                            Double.parseDouble(row[4].trim()),
+                            Double.parseDouble(row[5].trim()),
+                            parseLimit(row[6], 0));
+                } catch (DateTimeParseException | NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value in row " + Arrays.toString(row) + ": " + e.getMessage());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static double parseLimit(String value, double whenEmpty) {
+        String text = value.trim();
+        return text.isEmpty() ? whenEmpty : Double.parseDouble(text);
+    }
+
+    private static ContributionRules buildDefaults() {
+        Builder builder = new Builder();
+        LocalDate effective = LocalDate.of(2024, 1, 1);
+
+        // SSS: 135 up to 3,249, then 22.50 more for every 500 of salary, up to 1,125 from 24,750
+        builder.add(Kind.SSS, effective, 0, 3249, 135, 0, 0);
+        for (int step = 1; step < 44; step++) {
+            double minimum = 2750 + 500 * step;
+            builder.add(Kind.SSS, effective, minimum, minimum + 499, 135 + 22.5 * step, 0, 0);
+        }
+        builder.add(Kind.SSS, effective, 24750, Double.MAX_VALUE, 1125, 0, 0);
+
+        // Withholding tax on the monthly basic salary
+        builder.add(Kind.WITHHOLDING_TAX, effective, -Double.MAX_VALUE, 20833, 0, 0, 0);
+        builder.add(Kind.WITHHOLDING_TAX, effective, 20833, 33333, 0, 0.20, 20833);
+        builder.add(Kind.WITHHOLDING_TAX, effective, 33333, 66667, 2500, 0.25, 33333);
+        builder.add(Kind.WITHHOLDING_TAX, effective, 66667, 166667, 10833.33, 0.30, 66667);
+        builder.add(Kind.WITHHOLDING_TAX, effective, 166667, 666667, 40833.33, 0.32, 166667);
+        builder.add(Kind.WITHHOLDING_TAX, effective, 666667, Double.MAX_VALUE, 200833.33, 0.35, 666667);
+
+        // PhilHealth is 3% of the weekly gross, Pag-IBIG a flat 100
+        builder.add(Kind.PHILHEALTH, effective, -Double.MAX_VALUE, Double.MAX_VALUE, 0, 0.03, 0);
+        builder.add(Kind.PAGIBIG, effective, -Double.MAX_VALUE, Double.MAX_VALUE, 100, 0, 0);
+        return builder.build();
+    }
+
+    // Collects bracket rows in any order and compiles them into tables
+    static class Builder {
+        // kind -> effective date -> brackets {minimum, maximum, fixed, rate, excess over}
+        private final EnumMap<Kind, TreeMap<LocalDate, List<double[]>>> rows = new EnumMap<>(Kind.class);
+
+        void add(Kind kind, LocalDate effective, double minimum, double maximum,
+                 double fixedAmount, double rate, double excessOver) {
+            if (maximum < minimum) {
+                throw new IllegalArgumentException(kind.label + " bracket maximum " + maximum + " is below minimum " + minimum);
+            }
+            rows.computeIfAbsent(kind, k -> new TreeMap<>())
+                    .computeIfAbsent(effective, d -> new ArrayList<>())
+                    .add(new double[] {minimum, maximum, fixedAmount, rate, excessOver});
+        }
+
+        ContributionRules build() {
+            long[][] effectiveDays = new long[Kind.values().length][];
+            ContributionTable[][] tables = new ContributionTable[Kind.values().length][];
+            for (Kind kind : Kind.values()) {
+                TreeMap<LocalDate, List<double[]>> versions = rows.get(kind);
+                if (versions == null) {
+                    throw new IllegalArgumentException("No " + kind.label + " table");
+                }
+                effectiveDays[kind.ordinal()] = new long[versions.size()];
+                tables[kind.ordinal()] = new ContributionTable[versions.size()];
+                int v = 0;
+                for (Map.Entry<LocalDate, List<double[]>> version : versions.entrySet()) {
+                    effectiveDays[kind.ordinal()][v] = version.getKey().toEpochDay();
+                    tables[kind.ordinal()][v] = compile(kind, version.getValue());
+                    v++;
+                }
+            }
+            return new ContributionRules(effectiveDays, tables);
+        }
+
+        private static ContributionTable compile(Kind kind, List<double[]> brackets) {
+            List<double[]> sorted = new ArrayList<>(brackets);
+            sorted.sort(Comparator.comparingDouble(b -> b[1]));
+            int n = sorted.size();
+            double[] minimums = new double[n];
+            double[] maximums = new double[n];
+            double[] fixedAmounts = new double[n];
+            double[] rates = new double[n];
+            double[] excessOver = new double[n];
+            for (int i = 0; i < n; i++) {
+                double[] bracket = sorted.get(i);
+                // Brackets may have gaps between them, but must not overlap
+                if (i > 0 && bracket[0] < maximums[i - 1]) {
+                    throw new IllegalArgumentException(kind.label + " brackets overlap at " + bracket[0]);
+                }
+                minimums[i] = bracket[0];
+                maximums[i] = bracket[1];
+                fixedAmounts[i] = bracket[2];
+                rates[i] = bracket[3];
+                excessOver[i] = bracket[4];
+            }
+            return new ContributionTable(minimums, maximums, fixedAmounts, rates, excessOver);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.mycompany.motorphpayroll;
+
+// This class is one compiled bracket table, e.g. the SSS table that took effect on 1/1/24
+// Each bracket i covers amounts from minimums[i] to maximums[i] and its value is
+//     fixedAmounts[i] + (amount - excessOver[i]) * rates[i]
+// so the same class handles a flat contribution (SSS, Pag-IBIG), a percentage (PhilHealth)
+// and a base-plus-excess tax bracket (withholding tax)
+// The arrays are sorted by maximum and never change after the table is built, so one table
+// can be shared by every thread, and a lookup is a binary search that creates no objects
+// The brackets are read in pesos and kept in centavos and millionths (see Money), so apply() is exact
+final class ContributionTable {
+    // An open-ended limit is Long.MIN_VALUE or Long.MAX_VALUE
+    private final long[] minimumCentavos;
+    private final long[] maximumCentavos;
+    private final long[] fixedCentavos;
+    private final long[] rateMillionths;
+    private final long[] excessOverCentavos;
+
+    // The arrays must already be sorted by maximum (the loader checks this)
+    ContributionTable(double[] minimums, double[] maximums, double[] fixedAmounts, double[] rates, double[] excessOver) {
+        int n = maximums.length;
+        minimumCentavos = new long[n];
+        maximumCentavos = new long[n];
+        fixedCentavos = new long[n];
+        rateMillionths = new long[n];
+        excessOverCentavos = new long[n];
+        for (int i = 0; i < n; i++) {
+            minimumCentavos[i] = limitCentavos(minimums[i]);
+            maximumCentavos[i] = limitCentavos(maximums[i]);
+            fixedCentavos[i] = Money.centavos(fixedAmounts[i]);
+            rateMillionths[i] = Money.rate(rates[i]);
+            excessOverCentavos[i] = Money.centavos(excessOver[i]);
+        }
+    }
+
+    // The loader uses -Double.MAX_VALUE and Double.MAX_VALUE for "no limit"
+    private static long limitCentavos(double limit) {
+        if (limit <= -Long.MAX_VALUE / Money.CENTAVOS_PER_PESO) {
+            return Long.MIN_VALUE;
+        }
+        if (limit >= Long.MAX_VALUE / Money.CENTAVOS_PER_PESO) {
+            return Long.MAX_VALUE;
+        }
+        return Money.centavos(limit);
+    }
+
+    // fixed amount + (amount - excess over) * rate, in centavos, with the product rounded to the centavo
+    // Returns 0 when the amount is not in any bracket (below the first one, or in a gap between two)
+    long apply(long centavos) {
+        int low = 0;
+        int high = maximumCentavos.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maximumCentavos[mid] < centavos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == maximumCentavos.length || centavos < minimumCentavos[low]) {
+            return 0;
+        }
+        long rate = rateMillionths[low];
+        return rate == 0
+                ? fixedCentavos[low]
+                : fixedCentavos[low] + Money.applyRate(centavos - excessOverCentavos[low], rate);
+    }
+
+    // Bracket i back in pesos, {minimum, maximum, fixed amount, rate, excess over} like the loader reads it
+    // (an open-ended limit is -Double.MAX_VALUE or Double.MAX_VALUE again)
+    double[] bracket(int i) {
+        return new double[] {
+                minimumCentavos[i] == Long.MIN_VALUE ? -Double.MAX_VALUE : Money.pesos(minimumCentavos[i]),
+                maximumCentavos[i] == Long.MAX_VALUE ? Double.MAX_VALUE : Money.pesos(maximumCentavos[i]),
+                Money.pesos(fixedCentavos[i]),
+                rateMillionths[i] / (double) Money.RATE_SCALE,
+                Money.pesos(excessOverCentavos[i])};
+    }
+
+    int size() {
+        return maximumCentavos.length;
+    }
+}
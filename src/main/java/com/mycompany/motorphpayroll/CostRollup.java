@@ -0,0 +1,291 @@
+package com.mycompany.motorphpayroll;
+
+import java.time.Month;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+// This class adds up what the employees cost over a period, for every employee's whole team
+// (the employee plus everyone under them in the OrgChart). The amounts are centavos (see Money).
+//
+// Building it has two steps, both spread across the cores:
+//   1. every employee's own cost is computed in parallel (the payroll math, the slow part)
+//   2. the totals are carried up the tree one level at a time, from the bottom: all employees of a
+//      level add their team's total to their supervisor's at the same time
+// In step 2 every direct report of a supervisor adds into the same total at once, and later every
+// update() adds into the totals of the whole chain above the employee, so the top of the company is
+// added to by everyone. The totals of big teams are LongAdders, which spread the adds over several
+// cells instead of making the threads fight over one value; a small team's totals are plain slots
+// of one AtomicLongArray, which takes far less memory than a LongAdder per employee.
+//
+// When one employee's payroll is recomputed, update() adds only the difference to that employee's
+// team total and to each supervisor above, instead of building everything again.
+// The totals can be read while updates run; a reader may then see an update half applied.
+final class CostRollup {
+
+    enum Cost {
+        GROSS,
+        LATE_DEDUCTIONS,
+        CONTRIBUTIONS,   // SSS + Pag-IBIG + PhilHealth
+        WITHHOLDING_TAX,
+        ALLOWANCES,
+        FINAL_NET        // GROSS - LATE_DEDUCTIONS - CONTRIBUTIONS - WITHHOLDING_TAX + ALLOWANCES
+    }
+
+    private static final Cost[] COSTS = Cost.values();
+    private static final int FIELDS = COSTS.length;
+
+    // Teams at least this big get LongAdder totals
+    static final int WIDE_TEAM = 64;
+
+    final OrgChart chart;
+    final int year;
+    final Month fromMonth;
+    final Month toMonth;
+
+    private final AtomicLongArray own;          // [e * FIELDS + cost], what employee e alone costs
+    private final AtomicLongArray teamTotals;   // the same for the team of e, when e's team is small
+    private final int[] adderSlot;              // -1, or where e's LongAdders start in adders
+    private final LongAdder[] adders;
+
+    private CostRollup(OrgChart chart, int year, Month fromMonth, Month toMonth) {
+        this.chart = chart;
+        this.year = year;
+        this.fromMonth = fromMonth;
+        this.toMonth = toMonth;
+        int n = chart.size();
+        own = new AtomicLongArray(n * FIELDS);
+        teamTotals = new AtomicLongArray(n * FIELDS);
+        adderSlot = new int[n];
+        int wideTeams = 0;
+        for (int e = 0; e < n; e++) {
+            adderSlot[e] = chart.subtreeSize(e) >= WIDE_TEAM ? FIELDS * wideTeams++ : -1;
+        }
+        adders = new LongAdder[FIELDS * wideTeams];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+    }
+
+    // Computes everyone's cost with ownCost (employee number -> one amount per Cost) and adds it up the tree
+    static CostRollup build(OrgChart chart, int year, Month fromMonth, Month toMonth, IntFunction<long[]> ownCost) {
+        CostRollup rollup = new CostRollup(chart, year, fromMonth, toMonth);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            // 1. Everyone's own cost; each employee only writes their own slots
+            pool.submit(() -> IntStream.range(0, chart.size()).parallel().forEach(e -> {
+                long[] cost = ownCost.apply(e);
+                for (int f = 0; f < FIELDS; f++) {
+                    rollup.own.set(e * FIELDS + f, cost[f]);
+                    rollup.add(e, f, cost[f]);
+                }
+            })).join();
+
+            // 2. Team totals, bottom level first. A level only starts when the one below is done,
+            // so every total it reads is already complete
+            long aggregationStart = PayrollMetrics.start();
+            for (int d = chart.levelCount() - 1; d >= 1; d--) {
+                int[] level = chart.level(d);
+                pool.submit(() -> Arrays.stream(level).parallel().forEach(e -> {
+                    int parent = chart.parent(e);
+                    for (int f = 0; f < FIELDS; f++) {
+                        rollup.add(parent, f, rollup.teamTotal(e, f));
+                    }
+                })).join();
+            }
+            PayrollMetrics.phase(PayrollMetrics.Phase.AGGREGATION, aggregationStart);
+        } finally {
+            pool.shutdown();
+        }
+        return rollup;
+    }
+
+    // Builds the rollup for every month from fromMonth to toMonth out of the employees and attendance in the store
+    static CostRollup compute(OrgChart chart, PayrollStore store, ContributionRules rules,
+                              int year, Month fromMonth, Month toMonth) {
+        int months = toMonth.getValue() - fromMonth.getValue() + 1;
+        return build(chart, year, fromMonth, toMonth, e -> {
+            int s = store.indexOf(chart.employee(e).empId);
+            long[] cost = new long[FIELDS];
+            for (int m = 0; m < months; m++) {
+                addCost(cost, MotorPHPayroll.computeMonthlyPayroll(
+                        chart.employee(e), store.attendance(s), rules, year, fromMonth.plus(m)));
+            }
+            return cost;
+        });
+    }
+
+    // Adds the amounts of one computed payroll to cost; both are in centavos, so the totals are exact
+    static void addCost(long[] cost, MonthlyPayroll payroll) {
+        for (WeeklyPayroll week : payroll.weeks) {
+            cost[Cost.GROSS.ordinal()] += week.grossSalary;
+            cost[Cost.LATE_DEDUCTIONS.ordinal()] += week.lateDeduction;
+            cost[Cost.CONTRIBUTIONS.ordinal()] += week.sss + week.pagibig + week.philhealth;
+        }
+        cost[Cost.WITHHOLDING_TAX.ordinal()] += payroll.withholdingTax;
+        cost[Cost.ALLOWANCES.ordinal()] += payroll.allowances;
+        cost[Cost.FINAL_NET.ordinal()] += payroll.finalNet;
+    }
+
+    static long[] costOf(MonthlyPayroll payroll) {
+        long[] cost = new long[FIELDS];
+        addCost(cost, payroll);
+        return cost;
+    }
+
+    // Replaces employee e's own cost and adds the difference to e's team and to every team above it
+    // Only the chain from e to the top is touched (a handful of adds), the rest of the company is not
+    // Safe to call from several threads at once, even for the same employee
+    void update(int e, long[] cost) {
+        for (int f = 0; f < FIELDS; f++) {
+            long delta = cost[f] - own.getAndSet(e * FIELDS + f, cost[f]);
+            if (delta != 0) {
+                for (int node = e; node != OrgChart.NONE; node = chart.parent(node)) {
+                    add(node, f, delta);
+                }
+            }
+        }
+    }
+
+    long own(int e, Cost cost) {
+        return own.get(e * FIELDS + cost.ordinal());
+    }
+
+    long teamTotal(int e, Cost cost) {
+        return teamTotal(e, cost.ordinal());
+    }
+
+    // Everyone at the top of the company added up, i.e. the whole company
+    long companyTotal(Cost cost) {
+        long total = 0;
+        for (int e : chart.level(0)) {
+            total += teamTotal(e, cost);
+        }
+        return total;
+    }
+
+    private long teamTotal(int e, int field) {
+        int slot = adderSlot[e];
+        return slot < 0 ? teamTotals.get(e * FIELDS + field) : adders[slot + field].sum();
+    }
+
+    private void add(int e, int field, long amount) {
+        int slot = adderSlot[e];
+        if (slot < 0) {
+            teamTotals.getAndAdd(e * FIELDS + field, amount);
+        } else {
+            adders[slot + field].add(amount);
+        }
+    }
+
+    // ---- Command line ----
+
+    // How many levels below the chosen employee are printed; pass an employee ID to go further down
+    private static final int PRINT_LEVELS = 3;
+
+    // Usage: rollup <year> <month> [toMonth] [employeeId]   e.g. rollup 2024 june december 10002
+    // Prints the team totals of the employee (or of the whole company) and of the managers under them
+    static void run(String employeeFile, String attendanceFile, String[] args) {
+        String usage = "Usage: rollup <year> <month> [toMonth] [employeeId]";
+        if (args.length < 3 || args.length > 5) {
+            System.out.println(usage);
+            return;
+        }
+        int year;
+        Month fromMonth;
+        Month toMonth = null;
+        String employeeId = null;
+        try {
+            year = Integer.parseInt(args[1].trim());
+            fromMonth = PayrollServer.parseMonth(args[2]);
+            if (args.length == 5) {
+                toMonth = PayrollServer.parseMonth(args[3]);
+                employeeId = args[4].trim();
+            } else if (args.length == 4) {
+                // Either a month or an employee ID; IDs are numbers too big to be a month
+                try {
+                    toMonth = PayrollServer.parseMonth(args[3]);
+                } catch (RuntimeException e) {
+                    employeeId = args[3].trim();
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Invalid year or month: " + e.getMessage());
+            return;
+        }
+        if (toMonth == null) {
+            toMonth = fromMonth;
+        }
+        if (toMonth.compareTo(fromMonth) < 0) {
+            System.out.println("The last month must not be before the first month.");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        PayrollData data = PayrollData.load(employeeFile, attendanceFile);
+        data.compact();
+        OrgChart chart = OrgChart.of(data.employeeData);
+        int start = OrgChart.NONE;
+        if (employeeId != null) {
+            start = chart.indexOf(employeeId);
+            if (start < 0) {
+                System.out.println("Employee ID not found: " + employeeId);
+                return;
+            }
+        }
+        long loadedNanos = System.nanoTime();
+
+        CostRollup rollup = compute(chart, data.store(), data.contributionRules, year, fromMonth, toMonth);
+        long computedNanos = System.nanoTime();
+
+        rollup.print(start);
+        System.out.printf("Employees: %d, levels: %d, load time: %.3f s, rollup time: %.3f s%n",
+                chart.size(), chart.levelCount(), (loadedNanos - startNanos) / 1e9, (computedNanos - loadedNanos) / 1e9);
+    }
+
+    // One line per manager, indented under their supervisor; start = NONE prints the whole company
+    void print(int start) {
+        long outputStart = PayrollMetrics.start();
+        System.out.printf("%-8s %-44s %7s %14s %12s %12s %12s %12s %14s%n",
+                "Emp #", "Name / Position", "Team", "Gross", "Late", "Contrib.", "Tax", "Allowances", "Final Net");
+        int[] tops = start == OrgChart.NONE ? chart.level(0) : new int[] {start};
+        for (int top : tops) {
+            printTeam(top, 0);
+        }
+        if (start == OrgChart.NONE) {
+            System.out.println("------------------------");
+            System.out.printf("%-8s %-44s %7d %14.2f %12.2f %12.2f %12.2f %12.2f %14.2f%n", "", "COMPANY", chart.size(),
+                    Money.pesos(companyTotal(Cost.GROSS)), Money.pesos(companyTotal(Cost.LATE_DEDUCTIONS)),
+                    Money.pesos(companyTotal(Cost.CONTRIBUTIONS)), Money.pesos(companyTotal(Cost.WITHHOLDING_TAX)),
+                    Money.pesos(companyTotal(Cost.ALLOWANCES)), Money.pesos(companyTotal(Cost.FINAL_NET)));
+        }
+        PayrollMetrics.phase(PayrollMetrics.Phase.OUTPUT, outputStart);
+    }
+
+    // The tree is at most PRINT_LEVELS deep here, so recursion is fine
+    private void printTeam(int e, int indent) {
+        Employee employee = chart.employee(e);
+        String name = "  ".repeat(indent) + employee.lastName + ", " + employee.firstName
+                + (employee.position.isEmpty() ? "" : " / " + employee.position);
+        if (name.length() > 44) {
+            name = name.substring(0, 41) + "...";
+        }
+        System.out.printf("%-8s %-44s %7d %14.2f %12.2f %12.2f %12.2f %12.2f %14.2f%n", employee.empId, name,
+                chart.subtreeSize(e), Money.pesos(teamTotal(e, Cost.GROSS)), Money.pesos(teamTotal(e, Cost.LATE_DEDUCTIONS)),
+                Money.pesos(teamTotal(e, Cost.CONTRIBUTIONS)), Money.pesos(teamTotal(e, Cost.WITHHOLDING_TAX)),
+                Money.pesos(teamTotal(e, Cost.ALLOWANCES)), Money.pesos(teamTotal(e, Cost.FINAL_NET)));
+        if (indent + 1 >= PRINT_LEVELS) {
+            return;
+        }
+        // Only managers get a line of their own; everyone else is in their manager's team total
+        for (int i = 0; i < chart.childCount(e); i++) {
+            int report = chart.child(e, i);
+            if (chart.childCount(report) > 0) {
+                printTeam(report, indent + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mycompany.motorphpayroll;
+
+//This class stores the employee information
+class Employee {
+    String empId;
+    String lastName;
+    String firstName;
+    String birthday;
+    String status;       // Regular or Probationary
+    String position;
+    String supervisor;   // "Last Name, First Name" of the immediate supervisor, "N/A" for the top (see OrgChart)
+    double hourlyRate;
+    double riceSubsidy;
+    double phoneAllowance;
+    double clothingAllowance;
+    double basicSalary;
+
+    // This is the constructor method
+    // A constructor is a special method that runs when we create a new employee
+    // It lets us set up all the details of the employee at once
+
+    Employee(String empId,
+             String lastName,
+             String firstName,
+             String birthday,
+             String status,
+             String position,
+             String supervisor,
+             double hourlyRate,
+             double riceSubsidy,
+             double phoneAllowance,
+             double clothingAllowance,
+             double basicSalary) {
+
+         // Inside the constructor, we use "this" to refer to the current object's variables
+        // We're saying: "Set this employee's id to the id we received as input"
+        this.empId = empId;
+        this.lastName = lastName;
+        this.firstName = firstName;
+        this.birthday = birthday;
+        this.status = status;
+        this.position = position;
+        this.supervisor = supervisor;
+        this.hourlyRate = hourlyRate;
+        this.riceSubsidy = riceSubsidy;
+        this.phoneAllowance = phoneAllowance;
+        this.clothingAllowance = clothingAllowance;
+        this.basicSalary = basicSalary;
+    }
+}
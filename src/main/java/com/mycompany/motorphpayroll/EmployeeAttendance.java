@@ -0,0 +1,145 @@
+package com.mycompany.motorphpayroll;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// This class stores all the attendance of one employee, sorted by date
+// Instead of one object per day, the days are kept in plain arrays:
+//   epochDays[i]      = the date of the i-th record (days since 1970-01-01)
+//   workedPrefix[i]   = total minutes worked in records 0 .. i-1
+//   latePrefix[i]     = total late minutes in records 0 .. i-1
+// With the running totals, the hours between any two dates is just a subtraction
+// after two binary searches, no matter how many years of records there are
+// The totals are whole minutes, so subtracting them never loses a centavo to rounding
+// The arrays can also be shared by many employees (see PayrollStore): then this employee's records
+// are only the slice [start, end) of them, and the running totals go on across employees.
+// The subtraction works the same either way.
+class EmployeeAttendance {
+    final int[] epochDays;
+    final long[] workedPrefix;
+    final long[] latePrefix;
+    final int start;
+    final int end;
+    // True when the arrays have room after end that only this employee's next rows may use (see appended)
+    private boolean growable;
+
+    EmployeeAttendance(int[] epochDays, long[] workedPrefix, long[] latePrefix) {
+        this(epochDays, workedPrefix, latePrefix, 0, epochDays.length);
+    }
+
+    // A view of records [start, end) of arrays shared with other employees, nothing is copied
+    EmployeeAttendance(int[] epochDays, long[] workedPrefix, long[] latePrefix, int start, int end) {
+        this.epochDays = epochDays;
+        this.workedPrefix = workedPrefix;
+        this.latePrefix = latePrefix;
+        this.start = start;
+        this.end = end;
+    }
+
+    // This attendance plus rows dated on or after its last record, e.g. punches the watch mode just read
+    // The new rows go after end and the running totals go on from workedPrefix[end], so nothing already
+    // there is copied or summed again. The arrays are shared with the new object while they have room;
+    // this object still only sees [start, end), which does not change. When they are full (or belong to
+    // other employees too, like a PayrollStore slice) the records are copied into arrays with room to spare.
+    // Returns null if a row is dated before the one before it; the caller then sorts everything again.
+    // Only the newest object of an employee may be extended, and by one thread at a time
+    EmployeeAttendance appended(int[] days, int[] worked, int[] late, int count) {
+        int last = end > start ? epochDays[end - 1] : Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (days[i] < last) {
+                return null;
+            }
+            last = days[i];
+        }
+
+        int[] newDays = epochDays;
+        long[] newWorked = workedPrefix;
+        long[] newLate = latePrefix;
+        int newStart = start;
+        int newEnd = end;
+        if (!growable || end + count > epochDays.length) {
+            int size = size();
+            int capacity = Math.max(16, (size + count) * 3 / 2);
+            newDays = Arrays.copyOf(Arrays.copyOfRange(epochDays, start, end), capacity);
+            newWorked = new long[capacity + 1];
+            newLate = new long[capacity + 1];
+            for (int i = 0; i <= size; i++) {
+                newWorked[i] = workedBefore(i);
+                newLate[i] = lateBefore(i);
+            }
+            newStart = 0;
+            newEnd = size;
+        }
+        for (int i = 0; i < count; i++) {
+            newDays[newEnd] = days[i];
+            newWorked[newEnd + 1] = newWorked[newEnd] + worked[i];
+            newLate[newEnd + 1] = newLate[newEnd] + late[i];
+            newEnd++;
+        }
+
+        growable = false;
+        EmployeeAttendance result = new EmployeeAttendance(newDays, newWorked, newLate, newStart, newEnd);
+        result.growable = true;
+        return result;
+    }
+
+    // Number of attendance records
+    int size() {
+        return end - start;
+    }
+
+    // The date of this employee's i-th record (0 is the first)
+    int epochDay(int i) {
+        return epochDays[start + i];
+    }
+
+    // Minutes worked in this employee's records 0 .. i-1, for i from 0 to size()
+    long workedBefore(int i) {
+        return workedPrefix[start + i] - workedPrefix[start];
+    }
+
+    // Late minutes in this employee's records 0 .. i-1, for i from 0 to size()
+    long lateBefore(int i) {
+        return latePrefix[start + i] - latePrefix[start];
+    }
+
+    // Total minutes worked from startDate to endDate (both included)
+    long minutesWorked(LocalDate startDate, LocalDate endDate) {
+        int from = firstIndexOnOrAfter(startDate.toEpochDay());
+        int to = firstIndexOnOrAfter(endDate.toEpochDay() + 1);
+        return from < to ? workedPrefix[to] - workedPrefix[from] : 0;
+    }
+
+    // Total late minutes deducted from startDate to endDate (both included)
+    long lateMinutes(LocalDate startDate, LocalDate endDate) {
+        int from = firstIndexOnOrAfter(startDate.toEpochDay());
+        int to = firstIndexOnOrAfter(endDate.toEpochDay() + 1);
+        return from < to ? latePrefix[to] - latePrefix[from] : 0;
+    }
+
+    // Total hours worked from startDate to endDate (both included)
+    double hoursWorked(LocalDate startDate, LocalDate endDate) {
+        return minutesWorked(startDate, endDate) / 60.0;
+    }
+
+    // Total late hours deducted from startDate to endDate (both included)
+    double deductedHours(LocalDate startDate, LocalDate endDate) {
+        return lateMinutes(startDate, endDate) / 60.0;
+    }
+
+    // Binary search for the first record whose date is on or after the given day
+    // Returns an index into the arrays (from start to end), end if every record is before that day
+    int firstIndexOnOrAfter(long epochDay) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochDays[mid] < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,439 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// This class reads attendance_record.csv straight from a memory-mapped file
+// It expects the punch-clock layout: Employee ID,Last Name,First Name,Date,Log In,Log Out
+// Dates and times are read digit by digit into day numbers and minutes of the day,
+// so a valid row does not create a String[], a LocalDate or a LocalTime
+// It gives the same result as the OpenCSV loadAttendanceData:
+//   - the first line (header) is skipped
+//   - a row with less than 6 columns or an empty column throws IllegalArgumentException
+//   - a row with a bad date or time is skipped with "Skipping invalid data for Employee ID ..."
+class MappedAttendanceParser {
+
+    // Same grace period as loadAttendanceData: 8:10 in minutes of the day
+    private static final int GRACE_PERIOD_MINUTES = 8 * 60 + 10;
+
+    // The file is mapped in windows of at most this many bytes, so files over 2 GB still work
+    static final long WINDOW_SIZE = 1L << 30;
+
+    // What parseLine did with a line, so parseRange can count rows and skips for PayrollMetrics
+    private static final int ROW_ADDED = 0;
+    private static final int BLANK_LINE = 1;
+    private static final int INVALID_DATE = 2;
+    private static final int INVALID_TIME = 3;
+
+    // Loads the whole file on the current thread and prints the skipped rows like loadAttendanceData
+    static AttendanceIndex load(String filePath) {
+        return load(filePath, new ArrayList<>());
+    }
+
+    // When the file could not be read to the end the reason is added to loadErrors
+    static AttendanceIndex load(String filePath, List<String> loadErrors) {
+        PayrollEvents.LoadAttendanceData event = new PayrollEvents.LoadAttendanceData();
+        event.begin();
+        long loadStart = System.nanoTime();
+
+        AttendanceIndex.Builder attendance = new AttendanceIndex.Builder();
+        List<String> skippedRows = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = skipHeader(channel, size);
+            IdCache ids = new IdCache();
+
+            while (position < size) {
+                long length = Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                // Only parse up to the last full line of the window, the rest goes into the next window
+                int end = (int) length;
+                if (position + length < size) {
+                    end = lastLineEnd(buffer, end);
+                    if (end == 0) {
+                        throw new IllegalArgumentException("Attendance row longer than " + WINDOW_SIZE + " bytes at offset " + position);
+                    }
+                }
+                long parseStart = PayrollMetrics.start();
+                parseRange(buffer, 0, end, attendance, ids, skippedRows);
+                PayrollMetrics.phase(PayrollMetrics.Phase.CSV_READ, parseStart);
+                position += end;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading attendance file: " + e.getMessage());
+            loadErrors.add("Error reading attendance file: " + e.getMessage());
+        }
+
+        for (String message : skippedRows) {
+            System.out.println(message);
+        }
+        long buildStart = PayrollMetrics.start();
+        AttendanceIndex index = attendance.build();
+        PayrollMetrics.phase(PayrollMetrics.Phase.AGGREGATION, buildStart);
+        PayrollMetrics.attendanceLoaded(System.nanoTime() - loadStart);
+
+        event.file = filePath;
+        event.loader = "Mapped";
+        event.rows = attendance.rowCount() + skippedRows.size();
+        event.skippedRows = skippedRows.size();
+        event.employees = index.size();
+        event.commit();
+        return index;
+    }
+
+    // Returns the offset of the first byte after the header line
+    static long skipHeader(FileChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // Returns the offset just after the last '\n' in buffer[0, end), or 0 if there is none
+    static int lastLineEnd(ByteBuffer buffer, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    // Parses every line in buffer[start, end)
+    // start must be the beginning of a line, end must be the end of a line or the end of the file
+    // The rows and skips are counted here and added to PayrollMetrics once per range
+    static void parseRange(ByteBuffer buffer, int start, int end, AttendanceIndex.Builder attendance,
+                           IdCache ids, List<String> skippedRows) {
+        long rows = 0, blankLines = 0, invalidDates = 0, invalidTimes = 0;
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int result = parseLine(buffer, lineStart, lineEnd, attendance, ids, skippedRows);
+            if (result == BLANK_LINE) {
+                blankLines++;
+            } else {
+                rows++;
+                if (result == INVALID_DATE) {
+                    invalidDates++;
+                } else if (result == INVALID_TIME) {
+                    invalidTimes++;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        PayrollMetrics.attendanceRowsRead(rows);
+        PayrollMetrics.skipped(PayrollMetrics.SkipReason.BLANK_LINE, blankLines);
+        PayrollMetrics.skipped(PayrollMetrics.SkipReason.INVALID_DATE, invalidDates);
+        PayrollMetrics.skipped(PayrollMetrics.SkipReason.INVALID_TIME, invalidTimes);
+    }
+
+    // Parses one row, buffer[lineStart, lineEnd) without the '\n'
+    // Returns ROW_ADDED, BLANK_LINE, INVALID_DATE or INVALID_TIME
+    private static int parseLine(ByteBuffer buffer, int lineStart, int lineEnd, AttendanceIndex.Builder attendance,
+                                  IdCache ids, List<String> skippedRows) {
+        // A blank line (e.g. at the end of the file) has nothing to add
+        if (trimStart(buffer, lineStart, lineEnd) == trimEnd(buffer, lineStart, lineEnd)) {
+            return BLANK_LINE;
+        }
+
+        // Find where each column starts and ends. Quoted columns may contain commas.
+        // We need columns 0 to 5 and the last two columns (Log In and Log Out)
+        int idStart = -1, idEnd = -1, dateStart = -1, dateEnd = -1;
+        int previousStart = -1, previousEnd = -1, lastStart = -1, lastEnd = -1;
+        int column = 0;
+        int fieldStart = lineStart;
+        boolean emptyColumn = false;
+        while (true) {
+            int fieldEnd = fieldEnd(buffer, fieldStart, lineEnd);
+            int trimmedStart = trimStart(buffer, fieldStart, fieldEnd);
+            int trimmedEnd = trimEnd(buffer, trimmedStart, fieldEnd);
+            // A quoted column is read without its quotes, like OpenCSV does
+            if (trimmedEnd - trimmedStart >= 2 && buffer.get(trimmedStart) == '"' && buffer.get(trimmedEnd - 1) == '"') {
+                trimmedStart = trimStart(buffer, trimmedStart + 1, trimmedEnd - 1);
+                trimmedEnd = trimEnd(buffer, trimmedStart, trimmedEnd - 1);
+            }
+            if (column < 6 && trimmedStart == trimmedEnd) {
+                emptyColumn = true;
+            }
+            if (column == 0) {
+                idStart = trimmedStart;
+                idEnd = trimmedEnd;
+            } else if (column == 3) {
+                dateStart = trimmedStart;
+                dateEnd = trimmedEnd;
+            }
+            previousStart = lastStart;
+            previousEnd = lastEnd;
+            lastStart = trimmedStart;
+            lastEnd = trimmedEnd;
+            column++;
+            if (fieldEnd >= lineEnd) {
+                break;
+            }
+            fieldStart = fieldEnd + 1;
+        }
+
+        if (column < 6) {
+            throw new IllegalArgumentException("Missing data in CSV row: [" + text(buffer, lineStart, lineEnd) + "]");
+        }
+        if (emptyColumn) {
+            throw new IllegalArgumentException("Empty column in CSV row: [" + text(buffer, lineStart, lineEnd) + "]");
+        }
+
+        String employeeId = ids.get(buffer, idStart, idEnd);
+        int epochDay = parseDate(buffer, dateStart, dateEnd);
+        int login = parseTime(buffer, previousStart, previousEnd);
+        int logout = parseTime(buffer, lastStart, lastEnd);
+        if (epochDay == Integer.MIN_VALUE || login < 0 || logout < 0) {
+            skippedRows.add("Skipping invalid data for Employee ID: " + employeeId + " on date: " + text(buffer, dateStart, dateEnd));
+            return epochDay == Integer.MIN_VALUE ? INVALID_DATE : INVALID_TIME;
+        }
+
+        // Grace period check, same rule as loadAttendanceData
+        int minutesLate = login > GRACE_PERIOD_MINUTES ? login - GRACE_PERIOD_MINUTES : 0;
+        int adjustedMinutes = Math.max(logout - login - minutesLate, 0);
+        attendance.add(employeeId, epochDay, adjustedMinutes, minutesLate);
+        return ROW_ADDED;
+    }
+
+    // Returns the date of a row as days since 1970-01-01, reading only the Date column (the 4th),
+    // or Integer.MIN_VALUE for a blank line, a row with less than 4 columns or a bad date
+    // Used by PartitionedAttendance to find which month a row belongs to without parsing the rest
+    static int dateOfLine(ByteBuffer buffer, int lineStart, int lineEnd) {
+        int fieldStart = lineStart;
+        for (int column = 0; column < 3; column++) {
+            int fieldEnd = fieldEnd(buffer, fieldStart, lineEnd);
+            if (fieldEnd >= lineEnd) {
+                return Integer.MIN_VALUE;
+            }
+            fieldStart = fieldEnd + 1;
+        }
+        int fieldEnd = fieldEnd(buffer, fieldStart, lineEnd);
+        int dateStart = trimStart(buffer, fieldStart, fieldEnd);
+        int dateEnd = trimEnd(buffer, dateStart, fieldEnd);
+        if (dateEnd - dateStart >= 2 && buffer.get(dateStart) == '"' && buffer.get(dateEnd - 1) == '"') {
+            dateStart = trimStart(buffer, dateStart + 1, dateEnd - 1);
+            dateEnd = trimEnd(buffer, dateStart, dateEnd - 1);
+        }
+        return parseDate(buffer, dateStart, dateEnd);
+    }
+
+    // Returns the offset of the ',' that ends the column starting at fieldStart, or lineEnd
+    private static int fieldEnd(ByteBuffer buffer, int fieldStart, int lineEnd) {
+        boolean quoted = false;
+        for (int i = fieldStart; i < lineEnd; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                quoted = !quoted;   // "" inside quotes flips twice, so it stays quoted
+            } else if (b == ',' && !quoted) {
+                return i;
+            }
+        }
+        return lineEnd;
+    }
+
+    private static int trimStart(ByteBuffer buffer, int start, int end) {
+        while (start < end && (buffer.get(start) & 0xff) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(ByteBuffer buffer, int start, int end) {
+        while (end > start && (buffer.get(end - 1) & 0xff) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    // Parses M/d/yy into days since 1970-01-01, or returns Integer.MIN_VALUE if it is not a valid date
+    // Like DateTimeFormatter "M/d/yy": the year is 2000 + yy and a day past the end of the month
+    // (up to 31) is moved back to the last day of that month
+    static int parseDate(ByteBuffer buffer, int start, int end) {
+        int position = start;
+        int month = 0, day = 0, digits = 0;
+        while (position < end && isDigit(buffer.get(position)) && digits < 9) {
+            month = month * 10 + (buffer.get(position++) - '0');
+            digits++;
+        }
+        if (digits == 0 || position >= end || buffer.get(position++) != '/') {
+            return Integer.MIN_VALUE;
+        }
+        digits = 0;
+        while (position < end && isDigit(buffer.get(position)) && digits < 9) {
+            day = day * 10 + (buffer.get(position++) - '0');
+            digits++;
+        }
+        if (digits == 0 || position >= end || buffer.get(position++) != '/') {
+            return Integer.MIN_VALUE;
+        }
+        if (end - position != 2 || !isDigit(buffer.get(position)) || !isDigit(buffer.get(position + 1))) {
+            return Integer.MIN_VALUE;
+        }
+        int year = 2000 + (buffer.get(position) - '0') * 10 + (buffer.get(position + 1) - '0');
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return Integer.MIN_VALUE;
+        }
+        day = Math.min(day, lengthOfMonth(year, month));
+        return (int) toEpochDay(year, month, day);
+    }
+
+    // Parses H:mm into minutes of the day, or returns -1 if it is not a valid time
+    // Like DateTimeFormatter "H:mm", 24:00 is read as midnight
+    static int parseTime(ByteBuffer buffer, int start, int end) {
+        int position = start;
+        int hour = 0, digits = 0;
+        while (position < end && isDigit(buffer.get(position)) && digits < 9) {
+            hour = hour * 10 + (buffer.get(position++) - '0');
+            digits++;
+        }
+        if (digits == 0 || position >= end || buffer.get(position++) != ':') {
+            return -1;
+        }
+        if (end - position != 2 || !isDigit(buffer.get(position)) || !isDigit(buffer.get(position + 1))) {
+            return -1;
+        }
+        int minute = (buffer.get(position) - '0') * 10 + (buffer.get(position + 1) - '0');
+        if (minute > 59 || hour > 24 || (hour == 24 && minute != 0)) {
+            return -1;
+        }
+        return (hour % 24) * 60 + minute;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Same formula as LocalDate.toEpochDay, without creating a LocalDate
+    static long toEpochDay(int year, int month, int day) {
+        long y = year;
+        long total = 365 * y;
+        if (y >= 0) {
+            total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        } else {
+            total -= y / -4 - y / -100 + y / -400;
+        }
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            if (!leap) {
+                total--;
+            }
+        }
+        return total - 719528;  // days from year 0 to 1970
+    }
+
+    // Only used for error messages, so it is fine to create a String here
+    static String text(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Remembers the String of every employee ID already seen, so a row with a known ID
+    // does not create a new String. Numeric IDs (like 10001) are looked up by their value.
+    static class IdCache {
+        private long[] keys = new long[1024];
+        private String[] values = new String[1024];
+        private int size;
+
+        String get(ByteBuffer buffer, int start, int end) {
+            int length = end - start;
+            if (length == 0 || length > 15) {
+                return text(buffer, start, end);
+            }
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (!isDigit(b)) {
+                    return text(buffer, start, end);
+                }
+                value = value * 10 + (b - '0');
+            }
+            // The length is part of the key so "007" and "7" stay different IDs
+            long key = ((long) length << 56) | value;
+
+            int mask = keys.length - 1;
+            int slot = (int) (mix(key) & mask);
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            String id = text(buffer, start, end);
+            keys[slot] = key;
+            values[slot] = id;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return id;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new String[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = (int) (mix(oldKeys[i]) & mask);
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static long mix(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return key;
+        }
+    }
+}
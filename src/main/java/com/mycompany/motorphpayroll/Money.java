@@ -0,0 +1,69 @@
+package com.mycompany.motorphpayroll;
+
+// This class is the fixed-point arithmetic the payroll is computed with
+// Amounts are long centavos (1 peso = 100), hours are long minutes and rates (like 3% or 0.25)
+// are long millionths (3% = 30_000). All of them are plain longs, so nothing is allocated and
+// every sum is exact: a total is always exactly the sum of the amounts shown for its parts.
+//
+// Rounding rules
+//   - Only a multiplication by hours or by a rate can give a fraction of a centavo. The result is
+//     rounded to the nearest centavo right there, half a centavo away from zero (like printf and
+//     like rounding by hand), e.g. 535.71 per hour * 2428 minutes = 21,678.398 -> 21,678.40
+//   - Every amount that is stored or printed (weekly gross, late deduction, each contribution,
+//     the tax) is rounded once, and totals are exact sums of those rounded amounts
+//   - Pesos read from the CSVs (hourly rate, salary, allowances, table amounts) are rounded to
+//     the nearest centavo when converted; rates are rounded to the nearest millionth
+// A result that does not fit in a long throws ArithmeticException instead of wrapping around.
+final class Money {
+
+    static final long CENTAVOS_PER_PESO = 100;
+    static final long MINUTES_PER_HOUR = 60;
+    static final long RATE_SCALE = 1_000_000;
+
+    private Money() {
+    }
+
+    // Pesos (e.g. 535.71 from employee_data.csv) to centavos
+    static long centavos(double pesos) {
+        return roundHalfAwayFromZero(pesos * CENTAVOS_PER_PESO);
+    }
+
+    // A rate like 0.03 to millionths
+    static long rate(double rate) {
+        return roundHalfAwayFromZero(rate * RATE_SCALE);
+    }
+
+    static double pesos(long centavos) {
+        return centavos / (double) CENTAVOS_PER_PESO;
+    }
+
+    static double hours(long minutes) {
+        return minutes / (double) MINUTES_PER_HOUR;
+    }
+
+    // Pay for the given minutes at an hourly rate, rounded to the centavo
+    static long payForMinutes(long centavosPerHour, long minutes) {
+        return divideRounded(Math.multiplyExact(centavosPerHour, minutes), MINUTES_PER_HOUR);
+    }
+
+    // amount * rate, rounded to the centavo
+    static long applyRate(long centavos, long rateMillionths) {
+        return divideRounded(Math.multiplyExact(centavos, rateMillionths), RATE_SCALE);
+    }
+
+    // numerator / denominator, rounded half away from zero; the denominator must be positive and even
+    // (60 and 1,000,000 are), so "half" is exact
+    static long divideRounded(long numerator, long denominator) {
+        long half = denominator / 2;
+        return numerator >= 0
+                ? (numerator + half) / denominator
+                : -((-numerator + half) / denominator);
+    }
+
+    private static long roundHalfAwayFromZero(double value) {
+        if (Double.isNaN(value) || Math.abs(value) >= Long.MAX_VALUE) {
+            throw new ArithmeticException("Amount out of range: " + value);
+        }
+        return value >= 0 ? Math.round(value) : -Math.round(-value);
+    }
+}
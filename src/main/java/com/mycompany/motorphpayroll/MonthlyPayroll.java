@@ -0,0 +1,35 @@
+package com.mycompany.motorphpayroll;
+
+import java.time.Month;
+
+// This class stores the four weekly payrolls of one employee for one month
+// together with the monthly totals that are printed after the 4th week
+// The amounts are in centavos (see Money), like in WeeklyPayroll
+class MonthlyPayroll {
+    Employee employee;
+    int year;
+    Month month;
+    WeeklyPayroll[] weeks;   // Always 4 weeks, starting on the first Monday of the month
+    long totalNet;           // Sum of the weekly net pay
+    long withholdingTax;     // Based on the basic salary, deducted once a month
+    long allowances;         // Rice + phone + clothing
+    long finalNet;           // totalNet - withholdingTax + allowances
+
+    MonthlyPayroll(Employee employee,
+                   int year,
+                   Month month,
+                   WeeklyPayroll[] weeks,
+                   long totalNet,
+                   long withholdingTax,
+                   long allowances,
+                   long finalNet) {
+        this.employee = employee;
+        this.year = year;
+        this.month = month;
+        this.weeks = weeks;
+        this.totalNet = totalNet;
+        this.withholdingTax = withholdingTax;
+        this.allowances = allowances;
+        this.finalNet = finalNet;
+    }
+}
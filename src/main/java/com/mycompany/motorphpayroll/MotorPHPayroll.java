@@ -13,65 +13,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
-//This class stores the employee information
-class Employee {
-    String empId;
-    String lastName;
-    String firstName;
-    String birthday;
-    double hourlyRate;
-    double riceSubsidy;
-    double phoneAllowance;
-    double clothingAllowance;
-    double basicSalary;
-
-    // This is the constructor method
-    // A constructor is a special method that runs when we create a new employee
-    // It lets us set up all the details of the employee at once
-
-    Employee(String empId,
-             String lastName,
-             String firstName,
-             String birthday,
-             double hourlyRate,
-             double riceSubsidy,
-             double phoneAllowance,
-             double clothingAllowance,
-             double basicSalary) {
-
-         // Inside the constructor, we use "this" to refer to the current object's variables
-        // We're saying: "Set this employee's id to the id we received as input"
-        this.empId = empId;
-        this.lastName = lastName;
-        this.firstName = firstName;
-        this.birthday = birthday;
-        this.hourlyRate = hourlyRate;
-        this.riceSubsidy = riceSubsidy;
-        this.phoneAllowance = phoneAllowance;
-        this.clothingAllowance = clothingAllowance;
-        this.basicSalary = basicSalary;
-    }
-}
-
-// This class stores the attendance or work record of an employee for a specific day
-class EmployeeRecord {
-    String date; // The date of the work record 
-    double hoursWorked;  // Total number of hours the employee worked on that day
-    double deductedHours; // Number of hours deducted (example: for being late or absent)
-
-    // This is the constructor of the EmployeeRecord class
-    // It allows us to create a new record and set the values immediately
-    EmployeeRecord(String date, double hoursWorked, double deductedHours) {
-
-     // Assigns the value passed into the constructor to the class variable
-        this.date = date;
-     // Assigns how many hours were worked
-        this.hoursWorked = hoursWorked;
-      // Assign show many hours were deducted
-        this.deductedHours = deductedHours;
-    }
-}
-
 public class MotorPHPayroll { 
 
  // This sets up a date formatter to format or read dates in the pattern M/d/yy (e.g., 3/31/25)
@@ -82,67 +23,17 @@ public class MotorPHPayroll {
 
     
     // SSS calculation method 
-    public static double calculateSSS(double salary) {
- // This is a 2D array that holds salary ranges and the corresponding SSS contribution
-    // Each row = {minimum salary, maximum salary, SSS contribution}
-        double[][] salaryRanges = {
-            {0, 3249, 135}, {3250, 3749, 157.5}, {3750, 4249, 180}, {4250, 4749, 202.5},
-            {4750, 5249, 225}, {5250, 5749, 247.5}, {5750, 6249, 270}, {6250, 6749, 292.5},
-            {6750, 7249, 315}, {7250, 7749, 337.5}, {7750, 8249, 360}, {8250, 8749, 382.5},
-            {8750, 9249, 405}, {9250, 9749, 427.5}, {9750, 10249, 450}, {10250, 10749, 472.5},
-            {10750, 11249, 495}, {11250, 11749, 517.5}, {11750, 12249, 540}, {12250, 12749, 562.5},
-            {12750, 13249, 585}, {13250, 13749, 607.5}, {13750, 14249, 630}, {14250, 14749, 652.5},
-            {14750, 15249, 675}, {15250, 15749, 697.5}, {15750, 16249, 720}, {16250, 16749, 742.5},
-            {16750, 17249, 765}, {17250, 17749, 787.5}, {17750, 18249, 810}, {18250, 18749, 832.5},
-            {18750, 19249, 855}, {19250, 19749, 877.5}, {19750, 20249, 900}, {20250, 20749, 922.5},
-            {20750, 21249, 945}, {21250, 21749, 967.5}, {21750, 22249, 990}, {22250, 22749, 1012.5},
-            {22750, 23249, 1035}, {23250, 23749, 1057.5}, {23750, 24249, 1080}, {24250, 24749, 1102.5},
-            {24750, Double.MAX_VALUE, 1125}
-        };
-    // Loop through each range in the salaryRanges table
-        for (double[] range : salaryRanges) {
- // Check if the input salary falls within the current range
-            if (salary >= range[0] && salary <= range[1]) {
-                return range[2];
-            }
-        }   // In case salary doesn't match (this shouldn't happen), return 0
-        return 0;
+    // The SSS brackets live in ContributionRules (loaded from contribution_tables.csv), and the
+    // table used is the one in effect on the pay date. The salary and the result are in centavos (see Money)
+    static long calculateSSS(ContributionRules rules, LocalDate payDate, long salary) {
+        return rules.table(ContributionRules.Kind.SSS, payDate).apply(salary);
     }
     
     
     // This is the Withholding Tax Calculation based on the MotorPH data
-    private static double calculateWithholdingTax(double basicSalary) {
-        double tax; // This will store the result of the tax to be returned 
-
-       // If the salary is 20,833 or less, there's no tax
-        if (basicSalary <= 20833) {
-            tax = 0; 
- // If the salary is more than 20,833 but less than or equal to 33,333
-    // Tax is 20% of the amount over 20,833
-        } else if (basicSalary <= 33333) {
-            tax = (basicSalary - 20833) * 0.20;
-
-    // If salary is more than 33,333 but less than or equal to 66,667
-    // Base tax is 2,500 + 25% of the excess over 33,333
-        } else if (basicSalary <= 66667) {
-            tax = 2500 + (basicSalary - 33333) * 0.25; 
-
-    // If salary is more than 66,667 but less than or equal to 166,667
-    // Base tax is 10,833.33 + 30% of the excess over 66,667
-        } else if (basicSalary <= 166667) {
-            tax = 10833.33 + (basicSalary - 66667) * 0.30; 
-
-    // If salary is more than 166,667 but less than or equal to 666,667
-    // Base tax is 40,833.33 + 32% of the excess over 166,667
-        } else if (basicSalary <= 666667) {
-            tax = 40833.33 + (basicSalary - 166667) * 0.32; 
-
-    // If salary is more than 666,667
-    // Base tax is 200,833.33 + 35% of the excess over 666,667
-        } else {
-            tax = 200833.33 + (basicSalary - 666667) * 0.35;
-        }
-        return tax; // This will return the computed tax
+    // Like calculateSSS, the brackets come from the table in effect on the pay date
+    static long calculateWithholdingTax(ContributionRules rules, LocalDate payDate, long basicSalary) {
+        return rules.table(ContributionRules.Kind.WITHHOLDING_TAX, payDate).apply(basicSalary);
     }
     
     
@@ -152,8 +43,24 @@ public class MotorPHPayroll {
     }
     
     
+    // The payroll months whose four weeks include the given day: the day's own month, and also the
+    // month before when the day is in that month's 4th week (e.g. Friday 2024-11-01 is paid in October)
+    // A weekend or a day before the month's first Monday may be in none
+    static List<YearMonth> payrollMonthsOf(LocalDate day) {
+        List<YearMonth> months = new ArrayList<>(2);
+        YearMonth own = YearMonth.from(day);
+        for (YearMonth month : List.of(own.minusMonths(1), own)) {
+            LocalDate firstMonday = getFirstMondayOfMonth(month.getYear(), month.getMonthValue());
+            if (!day.isBefore(firstMonday) && !day.isAfter(firstMonday.plusWeeks(3).plusDays(4))) {
+                months.add(month);
+            }
+        }
+        return months;
+    }
+
+
     // This part of the code is to get the first Monday of a given month and year
-    private static LocalDate getFirstMondayOfMonth(int year, int month) {
+    static LocalDate getFirstMondayOfMonth(int year, int month) {
         LocalDate date = LocalDate.of(year, month, 1);
 
      // Loop forward day by day until we find a Monday
@@ -167,11 +74,20 @@ public class MotorPHPayroll {
 
     
     //This method is used to load employee data from a CSV file
-    private static HashMap<String, Employee> loadEmployeeData(String filePath) { 
+    static HashMap<String, Employee> loadEmployeeData(String filePath) { 
+        return loadEmployeeData(filePath, new ArrayList<>());
+    }
+
+    // Same as above, and when the file could not be read to the end the reason is added to loadErrors
+    // (the employees read before the problem are still returned)
+    static HashMap<String, Employee> loadEmployeeData(String filePath, List<String> loadErrors) { 
+        PayrollEvents.LoadEmployeeData event = new PayrollEvents.LoadEmployeeData();
+        event.begin();
 
      // This part is where the HashMap stores all employee info
     // The key is the employee's ID (String), and the value is the Employee object
         HashMap<String, Employee> employeeMap = new HashMap<>(); 
+        long rows = 0;
 
       // Try to read the CSV file using OpenCSV's CSVReader
         try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
@@ -181,14 +97,18 @@ public class MotorPHPayroll {
  
             try { 
           // This will keep reading the file one line at a time until there are no more lines
+                long readStart = PayrollMetrics.start();
                 while ((row = reader.readNext()) != null) {
+                    PayrollMetrics.phase(PayrollMetrics.Phase.CSV_READ, readStart);
                     
 
           // If it reads on the first line (which is the header), it will skip it
                     if (firstLine) {
                         firstLine = false;
+                        readStart = PayrollMetrics.start();
                         continue;
                     }
+                    rows++;
 
 
                     
@@ -203,6 +123,9 @@ public class MotorPHPayroll {
                     String lastName        = row[1].trim();
                     String firstName       = row[2].trim();
                     String birthday        = row[3].trim(); 
+                    String status          = row[10].trim();
+                    String position        = row[11].trim();
+                    String supervisor      = row[12].trim();
 
            // This will convert the basic salary to a number (double)
            // If the value is empty or invalid, it becomes 0.0 using parseDoubleOrZero()
@@ -225,6 +148,9 @@ public class MotorPHPayroll {
                             lastName,
                             firstName,
                             birthday,
+                            status,
+                            position,
+                            supervisor,
                             hourlyRate,
                             riceSubsidy,
                             phoneAllowance,
@@ -234,37 +160,62 @@ public class MotorPHPayroll {
 
                //After the employee data above, this line stores them in a map (like a mini database in memory) using the employee ID as the key.
                     employeeMap.put(empId, emp);
+                    readStart = PayrollMetrics.start();
                 } 
 
              // This line catches errors related to CSV validation (for example if the format is wrong)
             } catch (CsvValidationException ex) {
-                Logger.getLogger(MotorPHPayroll.class.getName()).log(Level.SEVERE, null, ex);
+                PayrollMetrics.skipped(PayrollMetrics.SkipReason.MALFORMED_CSV);
+                Logger.getLogger(MotorPHPayroll.class.getName()).log(Level.SEVERE,
+                        "Invalid CSV in " + filePath + " after " + rows + " employees, the rest of the file is skipped", ex);
+                loadErrors.add("Invalid CSV in " + filePath + " after " + rows + " employees");
             } 
          // This block catches file-related errors, like if the CSV file doesn't exist or can't be read
         } catch (IOException e) {
             System.err.println("Error reading employee file: " + e.getMessage());
+            loadErrors.add("Error reading employee file: " + e.getMessage());
         }
+
+        PayrollMetrics.employeeRowsRead(rows);
+        event.file = filePath;
+        event.employees = employeeMap.size();
+        event.commit();
         return employeeMap;
     }
 
     
     // I used OpenCSV for it to read csv file
-    private static HashMap<String, List<EmployeeRecord>> loadAttendanceData(String filePath) { 
+    static AttendanceIndex loadAttendanceData(String filePath) { 
+        return loadAttendanceData(filePath, new ArrayList<>());
+    }
+
+    // Same as above, and when the file could not be read to the end the reason is added to loadErrors
+    static AttendanceIndex loadAttendanceData(String filePath, List<String> loadErrors) { 
 
     // This will store all employee attendance records
     // The key (String) is the employee ID
-    // The value is a list of EmployeeRecord (one per day)
-        HashMap<String, List<EmployeeRecord>> attendanceMap = new HashMap<>();
+    // Each date is parsed only once here and kept as a day number, sorted per employee
+        PayrollEvents.LoadAttendanceData event = new PayrollEvents.LoadAttendanceData();
+        event.begin();
+        long loadStart = System.nanoTime();
+        long rows = 0;
+        long skipped = 0;
+
+        AttendanceIndex.Builder attendance = new AttendanceIndex.Builder();
         try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
             String[] row;
             boolean firstLine = true;
             try {
+                long readStart = PayrollMetrics.start();
                 while ((row = reader.readNext()) != null) {
+                    PayrollMetrics.phase(PayrollMetrics.Phase.CSV_READ, readStart);
                     
                     if (firstLine) {
                         firstLine = false;
+                        readStart = PayrollMetrics.start();
                         continue;
                     }
+                    rows++;
                     
                     if (row.length < 6) {
     throw new IllegalArgumentException("Missing data in CSV row: " + Arrays.toString(row));
@@ -283,36 +234,61 @@ for (int i = 0; i < 6; i++) {
                     String loginTimeStr = row[row.length - 2].trim();
                     String logoutTimeStr= row[row.length - 1].trim();
                     
+                    PayrollMetrics.SkipReason reason = PayrollMetrics.SkipReason.INVALID_DATE;
                     try {
+                        long parseStart = PayrollMetrics.start();
                         LocalDate date = LocalDate.parse(dateStr, dateFormatter);
+                        reason = PayrollMetrics.SkipReason.INVALID_TIME;
                         LocalTime loginTime = LocalTime.parse(loginTimeStr, timeFormatter);
                         LocalTime logoutTime = LocalTime.parse(logoutTimeStr, timeFormatter);
+                        PayrollMetrics.phase(PayrollMetrics.Phase.DATE_TIME_PARSING, parseStart);
                         
                         // Grace period check
                         LocalTime gracePeriod = LocalTime.of(8, 10);
-                        double deductedHours = 0.0;
+                        long minutesLate = 0;
                         if (loginTime.isAfter(gracePeriod)) {
-                            long minutesLate = Duration.between(gracePeriod, loginTime).toMinutes();
-                            deductedHours = minutesLate / 60.0;
+                            minutesLate = Duration.between(gracePeriod, loginTime).toMinutes();
                         }
                         
-                        double totalHours = Duration.between(loginTime, logoutTime).toMinutes() / 60.0;
-                        double adjustedHours = Math.max(totalHours - deductedHours, 0);
+                        // Hours are kept as whole minutes and only divided by 60 when the week is added up
+                        long totalMinutes = Duration.between(loginTime, logoutTime).toMinutes();
+                        long adjustedMinutes = Math.max(totalMinutes - minutesLate, 0);
                         
-                        attendanceMap.putIfAbsent(employeeId, new ArrayList<>());
-                        attendanceMap.get(employeeId).add(new EmployeeRecord(dateStr, adjustedHours, deductedHours));
+                        long addStart = PayrollMetrics.start();
+                        attendance.add(employeeId, (int) date.toEpochDay(), (int) adjustedMinutes, (int) minutesLate);
+                        PayrollMetrics.phase(PayrollMetrics.Phase.AGGREGATION, addStart);
                         
                     } catch (Exception e) {
+                        PayrollMetrics.skipped(reason);
+                        skipped++;
                         System.out.println("Skipping invalid data for Employee ID: " + employeeId + " on date: " + dateStr);
                     }
+                    readStart = PayrollMetrics.start();
                 }
             } catch (CsvValidationException ex) {
-                Logger.getLogger(MotorPHPayroll.class.getName()).log(Level.SEVERE, null, ex);
+                PayrollMetrics.skipped(PayrollMetrics.SkipReason.MALFORMED_CSV);
+                Logger.getLogger(MotorPHPayroll.class.getName()).log(Level.SEVERE,
+                        "Invalid CSV in " + filePath + " after " + rows + " attendance rows, the rest of the file is skipped", ex);
+                loadErrors.add("Invalid CSV in " + filePath + " after " + rows + " attendance rows");
             }
         } catch (IOException e) {
             System.err.println("Error reading attendance file: " + e.getMessage());
+            loadErrors.add("Error reading attendance file: " + e.getMessage());
         }
-        return attendanceMap;
+
+        long buildStart = PayrollMetrics.start();
+        AttendanceIndex index = attendance.build();
+        PayrollMetrics.phase(PayrollMetrics.Phase.AGGREGATION, buildStart);
+        PayrollMetrics.attendanceRowsRead(rows);
+        PayrollMetrics.attendanceLoaded(System.nanoTime() - loadStart);
+
+        event.file = filePath;
+        event.loader = "OpenCSV";
+        event.rows = rows;
+        event.skippedRows = skipped;
+        event.employees = index.size();
+        event.commit();
+        return index;
     }
 
     
@@ -324,14 +300,165 @@ for (int i = 0; i < 6; i++) {
         }
     }
 
+    // This computes the payroll of one employee for one month
+    // It is the same weekly loop that main used to print directly, so the interactive
+    // lookup and the batch run always give the same numbers
+    // The attendance can be null if the employee has no records yet
+    // The SSS, PhilHealth, Pag-IBIG and tax tables are the ones in effect on the last day of the 4th week
+    // All the math is done in centavos and minutes with Money, so every amount is rounded to the
+    // centavo once and the totals are exact sums of the amounts that are printed
+    static MonthlyPayroll computeMonthlyPayroll(Employee employee, EmployeeAttendance attendance,
+                                                ContributionRules rules, int year, Month month) {
+        PayrollEvents.EmployeePayroll event = new PayrollEvents.EmployeePayroll();
+        event.begin();
+
+        LocalDate firstMonday = getFirstMondayOfMonth(year, month.getValue());
+        WeeklyPayroll[] weeks = new WeeklyPayroll[4];
+        long hourlyRate = Money.centavos(employee.hourlyRate);
+
+        long totalNet = 0;  // for accumulation of netpay, in centavos
+        long tax = 0;
+
+        for (int weekOffset = 0; weekOffset < 4; weekOffset++) {
+            LocalDate startDate = firstMonday.plusWeeks(weekOffset);
+            LocalDate endDate = startDate.plusDays(4);  // For the weekly calculation Monday to Friday
+
+            long workedMinutes = 0;
+            long lateMinutes = 0;
+
+            // Sum up minutes based on attendance (two binary searches, no scan of the records)
+            long aggregationStart = PayrollMetrics.start();
+            if (attendance != null) {
+                workedMinutes = attendance.minutesWorked(startDate, endDate);
+                lateMinutes = attendance.lateMinutes(startDate, endDate);
+            }
+            PayrollMetrics.phase(PayrollMetrics.Phase.AGGREGATION, aggregationStart);
+
+            long grossSalary = Money.payForMinutes(hourlyRate, workedMinutes);
+            long deductionForLate = Money.payForMinutes(hourlyRate, lateMinutes);
+
+            long sss = 0, pagibig = 0, philhealth = 0;
+            long deductionStart = PayrollMetrics.start();
+            if (applyDeductions(weekOffset)) {
+                // For the code to only deduct from SSS, Pag-IBIG, PhilHealth on the 4th week only 
+                sss = calculateSSS(rules, endDate, grossSalary * 2);  // semi-monthly rate 
+                pagibig = rules.table(ContributionRules.Kind.PAGIBIG, endDate).apply(grossSalary);
+                philhealth = rules.table(ContributionRules.Kind.PHILHEALTH, endDate).apply(grossSalary);
+                // Withholding tax is calculated but only deducted once the netpay for the month is shown
+                tax = calculateWithholdingTax(rules, endDate, Money.centavos(employee.basicSalary));
+            }
+            PayrollMetrics.phase(PayrollMetrics.Phase.DEDUCTIONS, deductionStart);
+
+            long totalDeduction = sss + pagibig + philhealth + deductionForLate;
+            long netPay = grossSalary - totalDeduction;
+            totalNet += netPay;
+
+            weeks[weekOffset] = new WeeklyPayroll(startDate, endDate, workedMinutes, grossSalary,
+                    lateMinutes, deductionForLate, sss, pagibig, philhealth, netPay);
+        }
+
+        // For the 4th week, this is where i subtracted withholding tax from the total net, and then add allowances
+        long allowances = Money.centavos(employee.riceSubsidy) + Money.centavos(employee.phoneAllowance)
+                + Money.centavos(employee.clothingAllowance);
+        long finalNet = totalNet - tax + allowances;
+
+        PayrollMetrics.payrollComputed();
+        if (event.shouldCommit()) {
+            event.employeeId = employee.empId;
+            event.year = year;
+            event.month = month.name();
+            event.finalNet = Money.pesos(finalNet);
+            event.commit();
+        }
+        return new MonthlyPayroll(employee, year, month, weeks, totalNet, tax, allowances, finalNet);
+    }
+
+
+    // This prints the weekly breakdown and the monthly totals of a computed payroll
+    // (the centavos and minutes are turned into pesos and hours only here)
+    static void printPayroll(MonthlyPayroll payroll) {
+        long outputStart = PayrollMetrics.start();
+        System.out.println("\nPayroll for " + payroll.month.getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " " + payroll.year + ":\n");
+
+        for (WeeklyPayroll week : payroll.weeks) {
+            // Weekly breakdown
+            System.out.println("Week " + week.startDate.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " "
+                    + week.startDate.getDayOfMonth() + " - " + week.endDate.getDayOfMonth());
+            System.out.printf("Hours Worked: %.2f%n", Money.hours(week.workedMinutes));
+            System.out.printf("Gross Salary (Weekly): %.2f%n", Money.pesos(week.grossSalary));
+            System.out.printf("Total Late Hours Deducted: %.2f%n", Money.hours(week.lateMinutes));
+            System.out.println("Deductions:");
+            System.out.printf("    Late Deduction (Monetary): %.2f%n", Money.pesos(week.lateDeduction));
+            System.out.printf("    SSS: %.2f%n", Money.pesos(week.sss));
+            System.out.printf("    Pag-IBIG: %.2f%n", Money.pesos(week.pagibig));
+            System.out.printf("    Philhealth: %.2f%n", Money.pesos(week.philhealth));
+            System.out.printf("Net Pay (This Week): %.2f%n", Money.pesos(week.netPay));
+            System.out.println("------------------------");
+        }
+
+        System.out.printf("TOTAL NET (Weeks 1-4): %.2f%n", Money.pesos(payroll.totalNet));
+        System.out.printf("Withholding Tax (Based on Basic Salary): %.2f%n", Money.pesos(payroll.withholdingTax));
+        System.out.printf("Total Allowances (Rice, Phone, Clothing): %.2f%n", Money.pesos(payroll.allowances));
+        System.out.printf("FINAL NET AFTER WITHHOLDING TAX & ALLOWANCES: %.2f%n", Money.pesos(payroll.finalNet));
+        PayrollMetrics.phase(PayrollMetrics.Phase.OUTPUT, outputStart);
+    }
+
+
     //this is the main 
+    // Run with no arguments for the interactive lookup of one employee,
+    // or with "batch <year> <month> [toMonth]" to compute every employee at once,
+    // or with "watch" to keep recomputing payroll as punches are appended to the attendance file,
+    // or with "serve [port]" to answer payslip lookups over HTTP,
+    // or with "export <year> <month> [toMonth] <file.csv|file.jsonl>" to write the payroll register of everyone,
+    // or with "finalize <year> <month> [toMonth]" to save a payroll run in the ledger (see PayrollLedger),
+    // or with "ledger payslip|ytd|yearend|compact ..." to read past payslips and totals back from the ledger,
+    // or with "rollup <year> <month> [toMonth] [employeeId]" to add up the payroll cost of every manager's team
+    // The file paths, year and port come from PayrollConfig (-Dmotorph.employees=... etc.)
+    // With -Dmotorph.metrics=<file> a JSON summary of rows, skips and phase times is written when the program ends
     public static void main(String[] args) {
-        String employeeFile = "C:\\Users\\Michiko\\Documents\\NetBeansProjects\\MotorPHPayroll\\src\\main\\java\\resources\\employee_data.csv";
-        String attendanceFile = "C:\\Users\\Michiko\\Documents\\NetBeansProjects\\MotorPHPayroll\\src\\main\\java\\resources\\attendance_record.csv";
+        PayrollConfig config = PayrollConfig.fromSystemProperties();
+        if (PayrollMetrics.ENABLED) {
+            // A shutdown hook also covers the server and the watch mode, which end with Ctrl+C
+            Runtime.getRuntime().addShutdownHook(new Thread(PayrollMetrics::writeSummary));
+        }
+        String employeeFile = config.employeeFile;
+        String attendanceFile = config.attendanceFile;
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("batch")) {
+            PayrollBatch.run(employeeFile, attendanceFile, args);
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("watch")) {
+            PayrollWatcher.run(employeeFile, attendanceFile);
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("export")) {
+            PayrollRegister.run(employeeFile, attendanceFile, args);
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("serve")) {
+            PayrollServer.run(config, args);
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("finalize")) {
+            PayrollLedger.finalizeRun(config, args);
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("ledger")) {
+            PayrollLedger.run(config, args);
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("rollup")) {
+            CostRollup.run(employeeFile, attendanceFile, args);
+            return;
+        }
 
         // This is for loading data
+        // Only the employees are read up front. The attendance is read one month at a time,
+        // just the months the chosen payroll needs (see PartitionedAttendance)
         HashMap<String, Employee> employeeData = loadEmployeeData(employeeFile);
-        HashMap<String, List<EmployeeRecord>> attendanceData = loadAttendanceData(attendanceFile);
+        ContributionRules contributionRules = ContributionRules.load(PayrollData.contributionTablesPath(employeeFile));
+        PartitionedAttendance attendanceData = PartitionedAttendance.open(attendanceFile);
 
         Scanner scanner = new Scanner(System.in);
 
@@ -373,71 +500,9 @@ for (int i = 0; i < 6; i++) {
             return;
         }
 
-        int year = 2024;  // since the data started in 2024
-        LocalDate firstMonday = getFirstMondayOfMonth(year, month.getValue());
-        System.out.println("\nPayroll for " + month.getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " " + year + ":\n");
-
-        double totalNet = 0.0;  // for accumulation of netpay
-
-        for (int weekOffset = 0; weekOffset < 4; weekOffset++) {
-            LocalDate startDate = firstMonday.plusWeeks(weekOffset);
-            LocalDate endDate = startDate.plusDays(4);  // For the weekly calculation Monday to Friday
-
-            double weeklyHours = 0;
-            double totalDeductedHours = 0;
-
-            // Sum up hours based on attendance
-            if (attendanceData.containsKey(inputEmployeeId)) {
-                for (EmployeeRecord record : attendanceData.get(inputEmployeeId)) {
-                    LocalDate recordDate = LocalDate.parse(record.date, dateFormatter);
-                    if (!recordDate.isBefore(startDate) && !recordDate.isAfter(endDate)) {
-                        weeklyHours += record.hoursWorked;
-                        totalDeductedHours += record.deductedHours;
-                    }
-                }
-            }
-
-            double grossSalary = weeklyHours * employee.hourlyRate;
-            double deductionForLate = totalDeductedHours * employee.hourlyRate;
-
-            double sss = 0, pagibig = 0, philhealth = 0, tax = 0;
-            if (applyDeductions(weekOffset)) {
-                // For the code to only deduct from SSS, Pag-IBIG, PhilHealth on the 4th week only 
-                sss = calculateSSS(grossSalary * 2);  // semi-monthly rate 
-                pagibig = 100;
-                philhealth = grossSalary * 0.03;
-                // Withholding tax is calculated but only deducted once the netpay for the month is shown
-                tax = calculateWithholdingTax(employee.basicSalary);
-            }
-
-            double totalDeduction = sss + pagibig + philhealth + deductionForLate;
-            double netPay = grossSalary - totalDeduction;
-            totalNet += netPay;
-
-            // Weekly breakdown
-            System.out.println("Week " + startDate.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " "
-                    + startDate.getDayOfMonth() + " - " + endDate.getDayOfMonth());
-            System.out.printf("Hours Worked: %.2f%n", weeklyHours);
-            System.out.printf("Gross Salary (Weekly): %.2f%n", grossSalary);
-            System.out.printf("Total Late Hours Deducted: %.2f%n", totalDeductedHours);
-            System.out.println("Deductions:");
-            System.out.printf("    Late Deduction (Monetary): %.2f%n", deductionForLate);
-            System.out.printf("    SSS: %.2f%n", sss);
-            System.out.printf("    Pag-IBIG: %.2f%n", pagibig);
-            System.out.printf("    Philhealth: %.2f%n", philhealth);
-            System.out.printf("Net Pay (This Week): %.2f%n", netPay);
-            System.out.println("------------------------");
-
-            // For the 4th week, this is where i subtracted withholding tax from the total net, and then add allowances
-            if (applyDeductions(weekOffset)) {
-                double allowances = employee.riceSubsidy + employee.phoneAllowance + employee.clothingAllowance;
-                double finalNet = totalNet - tax + allowances;
-                System.out.printf("TOTAL NET (Weeks 1-4): %.2f%n", totalNet);
-                System.out.printf("Withholding Tax (Based on Basic Salary): %.2f%n", tax);
-                System.out.printf("Total Allowances (Rice, Phone, Clothing): %.2f%n", allowances);
-                System.out.printf("FINAL NET AFTER WITHHOLDING TAX & ALLOWANCES: %.2f%n", finalNet);
-            }
-        }
+        int year = config.year;
+        printPayroll(computeMonthlyPayroll(employee, attendanceData.payrollAttendance(inputEmployeeId, year, month),
+                contributionRules, year, month));
 
         scanner.close();
     }
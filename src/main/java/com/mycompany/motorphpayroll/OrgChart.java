@@ -0,0 +1,207 @@
+package com.mycompany.motorphpayroll;
+
+import java.util.*;
+
+// This class is the reporting structure of the company, built from the Immediate Supervisor column
+// Every employee gets a number from 0 to size()-1 (in ID order), and the tree is kept in int arrays:
+//     parents[e]   = the number of e's supervisor, or NONE for the top of the company
+//     children     = everyone's direct reports, e's are children[childStart[e] .. childStart[e + 1])
+//     depths[e]    = how many supervisors are above e (0 for the top)
+//     levels[d]    = the employees at depth d, so the tree can be walked a whole level at a time
+// The supervisor is written as "Last Name, First Name". It is matched to an employee's names ignoring
+// case, commas and extra spaces, because the file sometimes has the comma in the wrong place
+// ("San, Jose Brad" for San Jose, Brad). A supervisor that can't be matched (not in the file, or two
+// employees with that name) is reported and the employee is put at the top, like a supervisor of "N/A".
+final class OrgChart {
+
+    static final int NONE = -1;
+
+    private final Employee[] employees;
+    private final int[] parents;
+    private final int[] childStart;
+    private final int[] children;
+    private final int[] depths;
+    private final int[] subtreeSizes;
+    private final int[][] levels;
+
+    private OrgChart(Employee[] employees, int[] parents) {
+        int n = employees.length;
+        this.employees = employees;
+        this.parents = parents;
+        this.depths = computeDepths(employees, parents);
+
+        // Direct reports, grouped by supervisor; each group stays in ID order
+        childStart = new int[n + 1];
+        for (int e = 0; e < n; e++) {
+            if (parents[e] != NONE) {
+                childStart[parents[e] + 1]++;
+            }
+        }
+        for (int e = 0; e < n; e++) {
+            childStart[e + 1] += childStart[e];
+        }
+        children = new int[childStart[n]];
+        int[] next = Arrays.copyOf(childStart, n);
+        for (int e = 0; e < n; e++) {
+            if (parents[e] != NONE) {
+                children[next[parents[e]]++] = e;
+            }
+        }
+
+        int maxDepth = -1;
+        for (int depth : depths) {
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        int[] levelSizes = new int[maxDepth + 1];
+        for (int depth : depths) {
+            levelSizes[depth]++;
+        }
+        levels = new int[maxDepth + 1][];
+        for (int d = 0; d <= maxDepth; d++) {
+            levels[d] = new int[levelSizes[d]];
+            levelSizes[d] = 0;
+        }
+        for (int e = 0; e < n; e++) {
+            levels[depths[e]][levelSizes[depths[e]]++] = e;
+        }
+
+        // Team sizes, from the bottom level up
+        subtreeSizes = new int[n];
+        Arrays.fill(subtreeSizes, 1);
+        for (int d = maxDepth; d >= 1; d--) {
+            for (int e : levels[d]) {
+                subtreeSizes[parents[e]] += subtreeSizes[e];
+            }
+        }
+    }
+
+    // Builds the chart of every employee in the map
+    static OrgChart of(Map<String, Employee> employeeData) {
+        Employee[] employees = employeeData.values().toArray(new Employee[0]);
+        Arrays.sort(employees, Comparator.comparing((Employee employee) -> employee.empId));
+        int n = employees.length;
+
+        // Name -> employee number, or ambiguous if two employees have the same name
+        final int ambiguous = -2;
+        HashMap<String, Integer> byName = new HashMap<>(n * 2);
+        for (int e = 0; e < n; e++) {
+            byName.merge(nameKey(employees[e].lastName + " " + employees[e].firstName), e, (a, b) -> ambiguous);
+        }
+
+        int[] parents = new int[n];
+        for (int e = 0; e < n; e++) {
+            parents[e] = NONE;
+            String supervisor = employees[e].supervisor == null ? "" : employees[e].supervisor.trim();
+            if (supervisor.isEmpty() || supervisor.equalsIgnoreCase("N/A")) {
+                continue;
+            }
+            Integer parent = byName.get(nameKey(supervisor));
+            if (parent == null) {
+                System.out.println("Supervisor \"" + supervisor + "\" of Employee #" + employees[e].empId
+                        + " is not in the employee file, counting the employee at the top");
+            } else if (parent == ambiguous) {
+                System.out.println("More than one employee is named \"" + supervisor + "\" (supervisor of Employee #"
+                        + employees[e].empId + "), counting the employee at the top");
+            } else if (parent == e) {
+                System.out.println("Employee #" + employees[e].empId + " is their own supervisor, counting the employee at the top");
+            } else {
+                parents[e] = parent;
+            }
+        }
+        return new OrgChart(employees, parents);
+    }
+
+    // "San, Jose Brad", "San Jose, Brad " and "san jose brad" all give "san jose brad"
+    static String nameKey(String name) {
+        return name.replace(',', ' ').trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Depth of every employee, walking up to a known depth without recursion
+    // If the supervisors go round in a circle, the circle is cut above the employee where it was found
+    private static int[] computeDepths(Employee[] employees, int[] parents) {
+        int n = parents.length;
+        int[] depths = new int[n];
+        Arrays.fill(depths, NONE);
+        boolean[] onPath = new boolean[n];
+        int[] path = new int[n];
+        for (int e = 0; e < n; e++) {
+            int length = 0;
+            int node = e;
+            while (node != NONE && depths[node] == NONE && !onPath[node]) {
+                onPath[node] = true;
+                path[length++] = node;
+                node = parents[node];
+            }
+            if (node != NONE && onPath[node]) {
+                int last = path[length - 1];
+                System.out.println("Supervisors of Employee #" + employees[last].empId
+                        + " go round in a circle, counting the employee at the top");
+                parents[last] = NONE;
+                node = NONE;
+            }
+            int depth = node == NONE ? -1 : depths[node];
+            for (int i = length - 1; i >= 0; i--) {
+                depths[path[i]] = ++depth;
+                onPath[path[i]] = false;
+            }
+        }
+        return depths;
+    }
+
+    int size() {
+        return employees.length;
+    }
+
+    // Returns the number of the employee with this ID, or -1
+    int indexOf(String employeeId) {
+        int low = 0;
+        int high = employees.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = employees[middle].empId.compareTo(employeeId);
+            if (compare == 0) {
+                return middle;
+            }
+            if (compare < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return -1;
+    }
+
+    Employee employee(int e) {
+        return employees[e];
+    }
+
+    int parent(int e) {
+        return parents[e];
+    }
+
+    int childCount(int e) {
+        return childStart[e + 1] - childStart[e];
+    }
+
+    int child(int e, int i) {
+        return children[childStart[e] + i];
+    }
+
+    int depth(int e) {
+        return depths[e];
+    }
+
+    // The employee plus everyone who reports to them, directly or not
+    int subtreeSize(int e) {
+        return subtreeSizes[e];
+    }
+
+    int levelCount() {
+        return levels.length;
+    }
+
+    // The employees at depth d; level 0 is the top of the company. The array is shared, don't change it
+    int[] level(int d) {
+        return levels[d];
+    }
+}
@@ -0,0 +1,164 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+// This class loads attendance_record.csv on all the cores at once
+// The file (after the header) is cut into byte ranges that always start at the beginning of a line.
+// Each range is parsed by MappedAttendanceParser on its own thread into its own builder,
+// then the builders are merged in file order. Because of that the result, and the order of the
+// "Skipping invalid data" messages, is the same no matter how many chunks are used.
+class ParallelAttendanceLoader {
+
+    // Uses one chunk per core
+    static AttendanceIndex load(String filePath) {
+        return load(filePath, Runtime.getRuntime().availableProcessors());
+    }
+
+    static AttendanceIndex load(String filePath, int chunkCount) {
+        return load(filePath, chunkCount, Long.MAX_VALUE);
+    }
+
+    // Only reads the file up to endOffset, which must be the end of a line
+    // (the watch mode uses this to load up to its last checkpoint)
+    static AttendanceIndex load(String filePath, int chunkCount, long endOffset) {
+        return load(filePath, chunkCount, endOffset, new ArrayList<>());
+    }
+
+    // When the file could not be read to the end the reason is added to loadErrors
+    static AttendanceIndex load(String filePath, int chunkCount, long endOffset, List<String> loadErrors) {
+        PayrollEvents.LoadAttendanceData event = new PayrollEvents.LoadAttendanceData();
+        event.begin();
+        long loadStart = System.nanoTime();
+
+        List<AttendanceIndex.Builder> builders = new ArrayList<>();
+        List<List<String>> skippedRows = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = Math.min(channel.size(), endOffset);
+            long dataStart = MappedAttendanceParser.skipHeader(channel, size);
+            long[] bounds = chunkBounds(channel, dataStart, size, chunkCount);
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(chunkCount, bounds.length - 1)));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    long start = bounds[i];
+                    long end = bounds[i + 1];
+                    AttendanceIndex.Builder builder = new AttendanceIndex.Builder();
+                    List<String> skipped = new ArrayList<>();
+                    builders.add(builder);
+                    skippedRows.add(skipped);
+                    futures.add(executor.submit(() -> {
+                        long parseStart = PayrollMetrics.start();
+                        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                        MappedAttendanceParser.parseRange(buffer, 0, (int) (end - start), builder,
+                                new MappedAttendanceParser.IdCache(), skipped);
+                        PayrollMetrics.phase(PayrollMetrics.Phase.CSV_READ, parseStart);
+                        return null;
+                    }));
+                }
+
+                // Wait for the chunks in file order, so the first bad row in the file is the one reported
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } catch (ExecutionException e) {
+            // A bad row (e.g. missing columns) fails the load the same way as the single-threaded loaders
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            System.err.println("Error reading attendance file: " + e.getCause().getMessage());
+            loadErrors.add("Error reading attendance file: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while reading attendance file");
+            loadErrors.add("Interrupted while reading attendance file");
+        } catch (IOException e) {
+            System.err.println("Error reading attendance file: " + e.getMessage());
+            loadErrors.add("Error reading attendance file: " + e.getMessage());
+        }
+
+        long rowCount = 0;
+        for (AttendanceIndex.Builder builder : builders) {
+            rowCount += builder.rowCount();
+        }
+        long skippedCount = 0;
+        for (List<String> messages : skippedRows) {
+            for (String message : messages) {
+                System.out.println(message);
+            }
+            skippedCount += messages.size();
+        }
+        long mergeStart = PayrollMetrics.start();
+        AttendanceIndex index = AttendanceIndex.Builder.merge(builders);
+        PayrollMetrics.phase(PayrollMetrics.Phase.AGGREGATION, mergeStart);
+        PayrollMetrics.attendanceLoaded(System.nanoTime() - loadStart);
+
+        event.file = filePath;
+        event.loader = "Parallel";
+        event.rows = rowCount + skippedCount;
+        event.skippedRows = skippedCount;
+        event.employees = index.size();
+        event.commit();
+        return index;
+    }
+
+    // Returns the chunk borders: chunk i is [bounds[i], bounds[i + 1])
+    // Every border except the first and the last is moved forward to the start of the next line
+    static long[] chunkBounds(FileChannel channel, long dataStart, long size, int chunkCount) throws IOException {
+        long dataSize = size - dataStart;
+        // A chunk is mapped in one piece, so it has to stay well under the 2 GB mapping limit
+        long minChunks = (dataSize + MappedAttendanceParser.WINDOW_SIZE / 2 - 1) / (MappedAttendanceParser.WINDOW_SIZE / 2);
+        int chunks = (int) Math.max(1, Math.max(chunkCount, minChunks));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(dataStart);
+        for (int i = 1; i < chunks; i++) {
+            long nominal = dataStart + dataSize * i / chunks;
+            long lineStart = nextLineStart(channel, Math.max(nominal, bounds.get(bounds.size() - 1)), size);
+            if (lineStart > bounds.get(bounds.size() - 1) && lineStart < size) {
+                bounds.add(lineStart);
+            }
+        }
+        if (size > bounds.get(bounds.size() - 1)) {
+            bounds.add(size);
+        }
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Returns the offset just after the first '\n' at or after position - 1,
+    // so a position that is already the start of a line stays where it is
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long offset = Math.max(0, position - 1);
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+}
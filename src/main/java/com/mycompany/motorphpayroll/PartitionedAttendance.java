@@ -0,0 +1,333 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// This class reads attendance_record.csv one month at a time
+// A payslip only needs the weeks of one month, but the file holds every punch ever recorded.
+// So the file is scanned once to build an offset index: for every year-month, the byte ranges of
+// the file that hold that month's rows. The punch clock writes the rows in date order, so a month
+// is usually one range. Computing a month then parses only the ranges of the months its weeks touch.
+//
+// The index is saved next to the attendance file as attendance_record.csv.months:
+//   header:  magic "MPHM", format version
+//   source:  offset the index covers (end of the last full line), CRC32C of the bytes just before it
+//   months:  count, then per month: year * 12 + month - 1, range count, then {start, end} per range
+// The attendance file only ever grows, so when it is longer than the saved offset and the bytes just
+// before that offset still match, only the new lines are scanned and added. Otherwise the whole
+// file is scanned again.
+//
+// A parsed month (a partition) is kept through a SoftReference, so it stays in memory while there
+// is room and the garbage collector drops it when memory is tight; it is parsed again the next time
+// it is needed. That way memory and lookup time depend on one month, not on years of history.
+class PartitionedAttendance {
+
+    static final int MAGIC = 0x4D50484D;  // "MPHM"
+    static final int VERSION = 1;
+    static final String FILE_SUFFIX = ".months";
+
+    // A range is never longer than this, so any range can be mapped in one piece
+    private static final long MAX_RANGE = MappedAttendanceParser.WINDOW_SIZE / 2;
+
+    private final String attendanceFile;
+    private final Path file;
+    private final Path indexFile;
+
+    // Month key (year * 12 + month - 1) -> byte ranges of the file, in file order
+    private final TreeMap<Integer, Ranges> months = new TreeMap<>();
+    // The offset just after the last full line the index covers
+    private long indexedEnd;
+
+    // Two threads that need the same month at the same time may both parse it, they get the same rows
+    private final Map<YearMonth, SoftReference<AttendanceIndex>> partitions = new ConcurrentHashMap<>();
+
+    private PartitionedAttendance(String attendanceFile) {
+        this.attendanceFile = attendanceFile;
+        this.file = Path.of(attendanceFile);
+        this.indexFile = Path.of(attendanceFile + FILE_SUFFIX);
+    }
+
+    // Reads the saved offset index (or builds it) and brings it up to date with the file
+    static PartitionedAttendance open(String attendanceFile) {
+        PartitionedAttendance attendance = new PartitionedAttendance(attendanceFile);
+        try {
+            long size = Files.size(attendance.file);
+            boolean saved = attendance.readIndex(size);
+            if (!saved) {
+                try (FileChannel channel = FileChannel.open(attendance.file, StandardOpenOption.READ)) {
+                    attendance.indexedEnd = MappedAttendanceParser.skipHeader(channel, size);
+                }
+            }
+            long savedEnd = attendance.indexedEnd;
+            if (attendance.indexedEnd < size) {
+                attendance.scan(attendance.indexedEnd, size);
+            }
+            if (!saved || attendance.indexedEnd != savedEnd) {
+                try {
+                    attendance.writeIndex();
+                } catch (IOException e) {
+                    System.err.println("Could not write partition index " + attendance.indexFile + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // IllegalArgumentException: a row longer than a whole window, the months before it are still usable
+            System.err.println("Error reading attendance file: " + e.getMessage());
+        }
+        return attendance;
+    }
+
+    // The months that have rows in the file, oldest first
+    List<YearMonth> months() {
+        List<YearMonth> list = new ArrayList<>(months.size());
+        for (int key : months.keySet()) {
+            list.add(toYearMonth(key));
+        }
+        return list;
+    }
+
+    // All the attendance of one month, parsed the first time it is needed
+    AttendanceIndex partition(YearMonth month) {
+        SoftReference<AttendanceIndex> reference = partitions.get(month);
+        AttendanceIndex partition = reference == null ? null : reference.get();
+        if (partition == null) {
+            partition = load(month);
+            partitions.put(month, new SoftReference<>(partition));
+        }
+        return partition;
+    }
+
+    // One employee's attendance from the months between from and to (both included),
+    // or null if the employee has no rows in those months
+    EmployeeAttendance attendance(String employeeId, LocalDate from, LocalDate to) {
+        List<EmployeeAttendance> parts = new ArrayList<>(2);
+        YearMonth last = YearMonth.from(to);
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(last); month = month.plusMonths(1)) {
+            EmployeeAttendance part = partition(month).get(employeeId);
+            if (part != null) {
+                parts.add(part);
+            }
+        }
+        return parts.isEmpty() ? null : AttendanceIndex.join(parts);
+    }
+
+    // The attendance computeMonthlyPayroll needs for one month
+    // The four weeks start on the first Monday, which can be as late as the 7th, so the 4th Friday
+    // can be in the next month (October 2024 runs from Monday October 7 to Friday November 1)
+    EmployeeAttendance payrollAttendance(String employeeId, int year, Month month) {
+        LocalDate firstMonday = MotorPHPayroll.getFirstMondayOfMonth(year, month.getValue());
+        return attendance(employeeId, firstMonday, firstMonday.plusWeeks(3).plusDays(4));
+    }
+
+    // Parses the ranges of one month with the same parser as the full loaders
+    private AttendanceIndex load(YearMonth month) {
+        PayrollEvents.LoadAttendanceData event = new PayrollEvents.LoadAttendanceData();
+        event.begin();
+        long loadStart = System.nanoTime();
+
+        AttendanceIndex.Builder attendance = new AttendanceIndex.Builder();
+        List<String> skippedRows = new ArrayList<>();
+        Ranges ranges = months.get(toKey(month));
+        if (ranges != null) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedAttendanceParser.IdCache ids = new MappedAttendanceParser.IdCache();
+                for (int i = 0; i < ranges.size; i++) {
+                    long start = ranges.offsets[2 * i];
+                    long end = ranges.offsets[2 * i + 1];
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    long parseStart = PayrollMetrics.start();
+                    MappedAttendanceParser.parseRange(buffer, 0, (int) (end - start), attendance, ids, skippedRows);
+                    PayrollMetrics.phase(PayrollMetrics.Phase.CSV_READ, parseStart);
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading attendance file: " + e.getMessage());
+            }
+        }
+
+        for (String message : skippedRows) {
+            System.out.println(message);
+        }
+        long buildStart = PayrollMetrics.start();
+        AttendanceIndex index = attendance.build();
+        PayrollMetrics.phase(PayrollMetrics.Phase.AGGREGATION, buildStart);
+        PayrollMetrics.attendanceLoaded(System.nanoTime() - loadStart);
+
+        event.file = attendanceFile;
+        event.loader = "Partition " + month;
+        event.rows = attendance.rowCount() + skippedRows.size();
+        event.skippedRows = skippedRows.size();
+        event.employees = index.size();
+        event.commit();
+        return index;
+    }
+
+    // Finds the month of every full line in [from, size) by reading only its Date column
+    // Lines without a readable date (blank lines, bad dates) stay in the range of the line before
+    // them, so the parser still sees them and reports them like the full loaders do
+    private void scan(long from, long size) throws IOException {
+        int runMonth = -1;
+        long runStart = from;
+        int monthKey = -1;
+        int monthFirstDay = 0, nextMonthFirstDay = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = from;
+            while (position < size) {
+                long length = Math.min(MappedAttendanceParser.WINDOW_SIZE, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                if (position + length < size) {
+                    end = MappedAttendanceParser.lastLineEnd(buffer, end);
+                    if (end == 0) {
+                        throw new IllegalArgumentException("Attendance row longer than " + MappedAttendanceParser.WINDOW_SIZE + " bytes at offset " + position);
+                    }
+                }
+
+                int lineStart = 0;
+                while (lineStart < end) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                        lineEnd++;
+                    }
+                    // A last line without '\n' may still be being written, so it is left out (like the
+                    // watch mode leaves a partial line alone) and the next run scans it again
+                    if (lineEnd == end) {
+                        break;
+                    }
+                    indexedEnd = position + lineEnd + 1;
+                    int epochDay = MappedAttendanceParser.dateOfLine(buffer, lineStart, lineEnd);
+                    if (epochDay != Integer.MIN_VALUE) {
+                        // Most rows are in the same month as the row before, so only a new month creates a LocalDate
+                        if (epochDay < monthFirstDay || epochDay >= nextMonthFirstDay || monthKey < 0) {
+                            LocalDate first = LocalDate.ofEpochDay(epochDay).withDayOfMonth(1);
+                            monthKey = toKey(YearMonth.from(first));
+                            monthFirstDay = (int) first.toEpochDay();
+                            nextMonthFirstDay = (int) first.plusMonths(1).toEpochDay();
+                        }
+                        long offset = position + lineStart;
+                        if (runMonth < 0) {
+                            runMonth = monthKey;
+                        } else if (monthKey != runMonth || offset - runStart >= MAX_RANGE) {
+                            addRange(runMonth, runStart, offset);
+                            runStart = offset;
+                            runMonth = monthKey;
+                        }
+                    }
+                    lineStart = lineEnd + 1;
+                }
+                position += end;
+            }
+        }
+        if (runMonth >= 0) {
+            addRange(runMonth, runStart, indexedEnd);
+        }
+    }
+
+    private void addRange(int monthKey, long start, long end) {
+        months.computeIfAbsent(monthKey, key -> new Ranges()).add(start, end);
+    }
+
+    // Returns false when there is no saved index or it was made for another file
+    private boolean readIndex(long size) {
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            long savedEnd = in.readLong();
+            long savedCrc = in.readLong();
+            if (savedEnd > size || savedCrc != PayrollWatcher.crcBefore(file, savedEnd)) {
+                return false;
+            }
+            int monthCount = in.readInt();
+            for (int m = 0; m < monthCount; m++) {
+                int key = in.readInt();
+                int rangeCount = in.readInt();
+                for (int i = 0; i < rangeCount; i++) {
+                    addRange(key, in.readLong(), in.readLong());
+                }
+            }
+            indexedEnd = savedEnd;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable partition index " + indexFile + ": " + e.getMessage());
+            months.clear();
+            return false;
+        }
+    }
+
+    // Only the part of the ranges before indexedEnd is saved, see scan()
+    // Written to a temporary file first and then renamed, like the snapshot
+    private void writeIndex() throws IOException {
+        Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(indexedEnd);
+            out.writeLong(PayrollWatcher.crcBefore(file, indexedEnd));
+
+            List<Integer> keys = new ArrayList<>();
+            for (Map.Entry<Integer, Ranges> entry : months.entrySet()) {
+                if (entry.getValue().offsets[0] < indexedEnd) {
+                    keys.add(entry.getKey());
+                }
+            }
+            out.writeInt(keys.size());
+            for (int key : keys) {
+                Ranges ranges = months.get(key);
+                int count = 0;
+                while (count < ranges.size && ranges.offsets[2 * count] < indexedEnd) {
+                    count++;
+                }
+                out.writeInt(key);
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    out.writeLong(ranges.offsets[2 * i]);
+                    out.writeLong(Math.min(ranges.offsets[2 * i + 1], indexedEnd));
+                }
+            }
+        }
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int toKey(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static YearMonth toYearMonth(int key) {
+        return YearMonth.of(key / 12, key % 12 + 1);
+    }
+
+    // The {start, end} byte ranges of one month, in file order
+    // A range that starts where the last one ended is merged into it, up to MAX_RANGE
+    private static class Ranges {
+        long[] offsets = new long[2];
+        int size;
+
+        void add(long start, long end) {
+            if (size > 0 && offsets[2 * size - 1] == start && end - offsets[2 * size - 2] <= MAX_RANGE) {
+                offsets[2 * size - 1] = end;
+                return;
+            }
+            if (2 * size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[2 * size] = start;
+            offsets[2 * size + 1] = end;
+            size++;
+        }
+    }
+}
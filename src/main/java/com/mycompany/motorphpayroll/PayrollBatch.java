@@ -0,0 +1,118 @@
+package com.mycompany.motorphpayroll;
+
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// This class runs the payroll of the whole company for a month or a range of months
+// Every employee-month is computed on its own with computeMonthlyPayroll, so the work
+// is spread across all the cores with a fork-join pool
+class PayrollBatch {
+
+    // Usage: batch <year> <month> [toMonth]   e.g. batch 2024 june december
+    static void run(String employeeFile, String attendanceFile, String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: batch <year> <month> [toMonth]");
+            return;
+        }
+
+        int year;
+        Month fromMonth;
+        Month toMonth;
+        try {
+            year = Integer.parseInt(args[1].trim());
+            fromMonth = Month.valueOf(args[2].trim().toUpperCase());
+            toMonth = args.length > 3 ? Month.valueOf(args[3].trim().toUpperCase()) : fromMonth;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid year or month: " + e.getMessage());
+            return;
+        }
+        if (toMonth.compareTo(fromMonth) < 0) {
+            System.out.println("The last month must not be before the first month.");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+
+        // Both files are read only once for the whole run, then put in one PayrollStore
+        PayrollData data = PayrollData.load(employeeFile, attendanceFile);
+        data.compact();
+        HashMap<String, Employee> employeeData = data.employeeData;
+        long loadedNanos = System.nanoTime();
+
+        List<MonthlyPayroll> results = computeAll(data.store(), data.contributionRules, year, fromMonth, toMonth);
+        long computedNanos = System.nanoTime();
+
+        printSummary(results);
+
+        double loadSeconds = (loadedNanos - startNanos) / 1e9;
+        double computeSeconds = (computedNanos - loadedNanos) / 1e9;
+        double totalSeconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("Employees: %d, months: %d, employee-months: %d%n",
+                employeeData.size(), toMonth.getValue() - fromMonth.getValue() + 1, results.size());
+        System.out.printf("Load time: %.3f s, compute time: %.3f s, total wall-clock time: %.3f s%n",
+                loadSeconds, computeSeconds, totalSeconds);
+        System.out.printf("Throughput: %.1f employee-months per second (compute), %.1f per second (total)%n",
+                results.size() / Math.max(computeSeconds, 1e-9), results.size() / Math.max(totalSeconds, 1e-9));
+    }
+
+    // Same as below, for data that is not in a PayrollStore yet (the store is built first)
+    static List<MonthlyPayroll> computeAll(Map<String, Employee> employeeData,
+                                           AttendanceIndex attendanceData,
+                                           ContributionRules rules,
+                                           int year, Month fromMonth, Month toMonth) {
+        return computeAll(PayrollStore.of(employeeData, attendanceData), rules, year, fromMonth, toMonth);
+    }
+
+    // This computes every employee for every month from fromMonth to toMonth in parallel
+    // The result is sorted by employee ID and then by month, so the output never depends on thread timing
+    // Employees are addressed by their number in the store, so no ID is hashed in the loop
+    static List<MonthlyPayroll> computeAll(PayrollStore store, ContributionRules rules,
+                                           int year, Month fromMonth, Month toMonth) {
+        // The store is in ID order; IDs that are only in the attendance file are left out
+        int[] employees = IntStream.range(0, store.size()).filter(store::hasEmployee).toArray();
+
+        int months = toMonth.getValue() - fromMonth.getValue() + 1;
+        int tasks = employees.length * months;
+        MonthlyPayroll[] results = new MonthlyPayroll[tasks];
+
+        // Each slot in the array belongs to exactly one task, so no locking is needed
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.submit(() -> IntStream.range(0, tasks).parallel().forEach(i -> {
+                int e = employees[i / months];
+                Month month = fromMonth.plus(i % months);
+                results[i] = MotorPHPayroll.computeMonthlyPayroll(
+                        store.employee(e), store.attendance(e), rules, year, month);
+            })).join();
+        } finally {
+            pool.shutdown();
+        }
+        return Arrays.asList(results);
+    }
+
+    // One line per employee-month, then the company totals
+    private static void printSummary(List<MonthlyPayroll> results) {
+        long outputStart = PayrollMetrics.start();
+        System.out.printf("%-8s %-30s %-14s %12s %12s %12s%n",
+                "Emp #", "Name", "Month", "Total Net", "Tax", "Final Net");
+
+        long companyFinalNet = 0;  // in centavos, so adding thousands of payslips loses nothing
+        for (MonthlyPayroll payroll : results) {
+            Employee employee = payroll.employee;
+            System.out.printf("%-8s %-30s %-14s %12.2f %12.2f %12.2f%n",
+                    employee.empId,
+                    employee.lastName + ", " + employee.firstName,
+                    payroll.month.getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " " + payroll.year,
+                    Money.pesos(payroll.totalNet),
+                    Money.pesos(payroll.withholdingTax),
+                    Money.pesos(payroll.finalNet));
+            companyFinalNet += payroll.finalNet;
+        }
+        System.out.println("------------------------");
+        System.out.printf("COMPANY FINAL NET: %.2f%n", Money.pesos(companyFinalNet));
+        PayrollMetrics.phase(PayrollMetrics.Phase.OUTPUT, outputStart);
+    }
+}
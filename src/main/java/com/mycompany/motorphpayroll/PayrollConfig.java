@@ -0,0 +1,79 @@
+package com.mycompany.motorphpayroll;
+
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+// This class holds the settings that used to be hard-coded in main
+// Each one can be changed with a system property, e.g.
+//     java -Dmotorph.employees=D:\payroll\employee_data.csv -Dmotorph.port=9090 ... serve
+// The default paths are relative to the project folder, which is the working directory
+// when the program is run from NetBeans or with mvn exec:java
+class PayrollConfig {
+    static final String DEFAULT_EMPLOYEE_FILE = "src/main/java/resources/employee_data.csv";
+    static final String DEFAULT_ATTENDANCE_FILE = "src/main/java/resources/attendance_record.csv";
+    static final int DEFAULT_YEAR = 2024;  // since the data started in 2024
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_CACHE_SIZE = 20_000;  // payslips, about 2 months of a 10,000-employee company
+    static final String LEDGER_FILE_NAME = "payroll_ledger.bin";
+
+    String employeeFile;
+    String attendanceFile;
+    int year;
+    int port;
+    int cacheSize = DEFAULT_CACHE_SIZE;
+    // The month the server computes for everyone before it starts answering, or null for none
+    YearMonth warmUpMonth;
+    // Where finalized payroll runs are kept; next to the attendance file unless set
+    String ledgerFile;
+
+    PayrollConfig(String employeeFile, String attendanceFile, int year, int port) {
+        this.employeeFile = employeeFile;
+        this.attendanceFile = attendanceFile;
+        this.year = year;
+        this.port = port;
+        Path parent = Path.of(attendanceFile).toAbsolutePath().getParent();
+        this.ledgerFile = parent == null ? LEDGER_FILE_NAME : parent.resolve(LEDGER_FILE_NAME).toString();
+    }
+
+    static PayrollConfig fromSystemProperties() {
+        PayrollConfig config = new PayrollConfig(
+                System.getProperty("motorph.employees", DEFAULT_EMPLOYEE_FILE),
+                System.getProperty("motorph.attendance", DEFAULT_ATTENDANCE_FILE),
+                intProperty("motorph.year", DEFAULT_YEAR),
+                intProperty("motorph.port", DEFAULT_PORT));
+        config.cacheSize = intProperty("motorph.cacheSize", DEFAULT_CACHE_SIZE);
+        config.warmUpMonth = warmUpMonth(System.getProperty("motorph.warmup"));
+        config.ledgerFile = System.getProperty("motorph.ledger", config.ledgerFile);
+        return config;
+    }
+
+    // -Dmotorph.warmup=current warms this month, -Dmotorph.warmup=2024-06 warms June 2024
+    private static YearMonth warmUpMonth(String value) {
+        if (value == null || value.trim().isEmpty() || value.trim().equalsIgnoreCase("none")) {
+            return null;
+        }
+        if (value.trim().equalsIgnoreCase("current")) {
+            return YearMonth.now();
+        }
+        try {
+            return YearMonth.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            System.err.println("Invalid value for motorph.warmup: " + value + ", not warming the cache");
+            return null;
+        }
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.mycompany.motorphpayroll;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// This class holds everything that is loaded at startup: the employees, their attendance
+// and the contribution tables
+class PayrollData {
+    // The tables are read from this file in the same folder as employee_data.csv
+    static final String CONTRIBUTION_TABLES_FILE = "contribution_tables.csv";
+
+    // Every load and every change gets a new number from here, so two different states of
+    // the data never have the same version (even across two PayrollData objects)
+    private static final AtomicLong NEXT_VERSION = new AtomicLong();
+
+    HashMap<String, Employee> employeeData;
+    AttendanceIndex attendanceData;
+    ContributionRules contributionRules = ContributionRules.defaults();
+    // Why a loader stopped before the end of its file (unreadable file, broken CSV quoting)
+    // Empty when both files were read completely; only then is the data saved as a snapshot
+    final List<String> loadErrors = new ArrayList<>();
+    private volatile long dataVersion = NEXT_VERSION.incrementAndGet();
+    // Set by compact(); null when the data has changed since then
+    private volatile PayrollStore store;
+
+    PayrollData(HashMap<String, Employee> employeeData, AttendanceIndex attendanceData) {
+        this.employeeData = employeeData;
+        this.attendanceData = attendanceData;
+    }
+
+    // Anything computed from the data (e.g. cached payslips) is only valid for the version it was computed from
+    long dataVersion() {
+        return dataVersion;
+    }
+
+    // Must be called after the employees or the attendance are reloaded or appended to
+    void dataChanged() {
+        store = null;
+        dataVersion = NEXT_VERSION.incrementAndGet();
+    }
+
+    // Moves all the attendance into one PayrollStore, for runs that work on the whole company
+    // attendanceData then reads from the store, so the per-employee arrays it had can be garbage collected
+    // The numbers don't change, so the data version stays the same
+    void compact() {
+        PayrollStore compacted = PayrollStore.of(employeeData, attendanceData);
+        attendanceData = compacted.attendanceIndex();
+        store = compacted;
+    }
+
+    // The store made by compact(), or null if compact() was not called or the data changed since
+    PayrollStore store() {
+        return store;
+    }
+
+    // Loads both files, from the binary snapshot when neither CSV has changed since it was written
+    static PayrollData load(String employeeFile, String attendanceFile) {
+        PayrollData data = PayrollSnapshot.loadOrBuild(employeeFile, attendanceFile);
+        data.contributionRules = ContributionRules.load(contributionTablesPath(employeeFile));
+        return data;
+    }
+
+    static String contributionTablesPath(String employeeFile) {
+        Path parent = Path.of(employeeFile).toAbsolutePath().getParent();
+        return parent == null ? CONTRIBUTION_TABLES_FILE : parent.resolve(CONTRIBUTION_TABLES_FILE).toString();
+    }
+
+    // Always parses both CSVs
+    static PayrollData loadFromCsv(String employeeFile, String attendanceFile) {
+        // The attendance file can be very large, so it is memory-mapped and read on all the cores
+        List<String> loadErrors = new ArrayList<>();
+        PayrollData data = new PayrollData(MotorPHPayroll.loadEmployeeData(employeeFile, loadErrors),
+                ParallelAttendanceLoader.load(attendanceFile, Runtime.getRuntime().availableProcessors(),
+                        Long.MAX_VALUE, loadErrors));
+        data.loadErrors.addAll(loadErrors);
+        return data;
+    }
+
+    // True when both files were read to the end
+    boolean loadedCleanly() {
+        return loadErrors.isEmpty();
+    }
+}
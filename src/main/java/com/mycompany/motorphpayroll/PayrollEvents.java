@@ -0,0 +1,68 @@
+package com.mycompany.motorphpayroll;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Custom JDK Flight Recorder events, recorded with e.g.
+//     java -XX:StartFlightRecording=filename=payroll.jfr ... MotorPHPayroll batch 2024 june
+// and shown under "MotorPH" in JDK Mission Control (or with: jfr print --categories MotorPH payroll.jfr)
+// When no recording is running, begin() and commit() do nothing, so the events can stay in the code.
+final class PayrollEvents {
+
+    private PayrollEvents() {
+    }
+
+    @Name("com.mycompany.motorphpayroll.LoadEmployeeData")
+    @Label("Load Employee Data")
+    @Category({"MotorPH", "Loading"})
+    @Description("Reading employee_data.csv")
+    static class LoadEmployeeData extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Employees")
+        int employees;
+    }
+
+    @Name("com.mycompany.motorphpayroll.LoadAttendanceData")
+    @Label("Load Attendance Data")
+    @Category({"MotorPH", "Loading"})
+    @Description("Reading attendance_record.csv with one of the attendance loaders")
+    static class LoadAttendanceData extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Loader")
+        String loader;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Skipped Rows")
+        long skippedRows;
+
+        @Label("Employees")
+        int employees;
+    }
+
+    @Name("com.mycompany.motorphpayroll.EmployeePayroll")
+    @Label("Employee Payroll")
+    @Category({"MotorPH", "Payroll"})
+    @Description("Computing one employee's payroll for one month")
+    static class EmployeePayroll extends Event {
+        @Label("Employee ID")
+        String employeeId;
+
+        @Label("Year")
+        int year;
+
+        @Label("Month")
+        String month;
+
+        @Label("Final Net")
+        double finalNet;
+    }
+}
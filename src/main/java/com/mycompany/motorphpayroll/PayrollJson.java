@@ -0,0 +1,152 @@
+package com.mycompany.motorphpayroll;
+
+import java.time.format.TextStyle;
+import java.util.Locale;
+
+// This class turns employees and payslips into JSON for the payslip server
+// The output is small and always has the same shape, so it is written by hand
+// instead of adding a JSON library to the project.
+// Amounts and hours are written with 2 decimals, the same as the printf output of the interactive lookup.
+class PayrollJson {
+
+    static String employee(Employee employee) {
+        StringBuilder json = new StringBuilder(256);
+        appendEmployee(json, employee);
+        return json.toString();
+    }
+
+    static String payslip(MonthlyPayroll payroll) {
+        StringBuilder json = new StringBuilder(1024);
+        json.append('{');
+        json.append("\"employee\":");
+        appendEmployee(json, payroll.employee);
+        json.append(",\"year\":").append(payroll.year);
+        json.append(",\"month\":");
+        appendString(json, payroll.month.getDisplayName(TextStyle.FULL, Locale.ENGLISH));
+
+        json.append(",\"weeks\":[");
+        for (int i = 0; i < payroll.weeks.length; i++) {
+            WeeklyPayroll week = payroll.weeks[i];
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"startDate\":");
+            appendString(json, week.startDate.toString());
+            json.append(",\"endDate\":");
+            appendString(json, week.endDate.toString());
+            json.append(",\"hoursWorked\":").append(twoDecimals(Money.hours(week.workedMinutes)));
+            json.append(",\"grossSalary\":").append(pesos(week.grossSalary));
+            json.append(",\"lateHours\":").append(twoDecimals(Money.hours(week.lateMinutes)));
+            json.append(",\"lateDeduction\":").append(pesos(week.lateDeduction));
+            json.append(",\"sss\":").append(pesos(week.sss));
+            json.append(",\"pagibig\":").append(pesos(week.pagibig));
+            json.append(",\"philhealth\":").append(pesos(week.philhealth));
+            json.append(",\"netPay\":").append(pesos(week.netPay));
+            json.append('}');
+        }
+        json.append(']');
+
+        json.append(",\"totalNet\":").append(pesos(payroll.totalNet));
+        json.append(",\"withholdingTax\":").append(pesos(payroll.withholdingTax));
+        json.append(",\"allowances\":").append(pesos(payroll.allowances));
+        json.append(",\"finalNet\":").append(pesos(payroll.finalNet));
+        json.append('}');
+        return json.toString();
+    }
+
+    static String error(String message) {
+        StringBuilder json = new StringBuilder(64);
+        json.append("{\"error\":");
+        appendString(json, message);
+        json.append('}');
+        return json.toString();
+    }
+
+    private static void appendEmployee(StringBuilder json, Employee employee) {
+        json.append("{\"empId\":");
+        appendString(json, employee.empId);
+        json.append(",\"lastName\":");
+        appendString(json, employee.lastName);
+        json.append(",\"firstName\":");
+        appendString(json, employee.firstName);
+        json.append(",\"birthday\":");
+        appendString(json, employee.birthday);
+        json.append(",\"hourlyRate\":").append(employee.hourlyRate);
+        json.append(",\"basicSalary\":").append(employee.basicSalary);
+        json.append(",\"riceSubsidy\":").append(employee.riceSubsidy);
+        json.append(",\"phoneAllowance\":").append(employee.phoneAllowance);
+        json.append(",\"clothingAllowance\":").append(employee.clothingAllowance);
+        json.append('}');
+    }
+
+    // Same text as String.format("%.2f"), which is slow when the payroll register writes millions of amounts
+    // Rounding the cents directly only gives a different answer when the value is (almost) exactly
+    // half a cent, because Formatter rounds the shortest decimal form of the double, not the double
+    // itself (1.005 is really 1.00499..., Formatter gives 1.01). Those values, and very large ones
+    // where a double has no room for the cents, are left to String.format.
+    static String twoDecimals(double value) {
+        double cents = Math.abs(value) * 100;
+        if (!(cents < 1e9)) {
+            return String.format(Locale.ROOT, "%.2f", value);
+        }
+        double whole = Math.floor(cents);
+        double fraction = cents - whole;
+        if (Math.abs(fraction - 0.5) < 1e-6) {
+            return String.format(Locale.ROOT, "%.2f", value);
+        }
+        long rounded = (long) whole + (fraction > 0.5 ? 1 : 0);
+        StringBuilder text = new StringBuilder(16);
+        // Formatter keeps the sign of -0.0 and of small negatives that round to zero ("-0.00")
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            text.append('-');
+        }
+        text.append(rounded / 100).append('.');
+        if (rounded % 100 < 10) {
+            text.append('0');
+        }
+        return text.append(rounded % 100).toString();
+    }
+
+    // An amount in centavos as pesos with two decimals, e.g. -5 gives "-0.05"
+    // Same text as twoDecimals(Money.pesos(centavos)), but exact for any amount
+    static String pesos(long centavos) {
+        StringBuilder text = new StringBuilder(24);
+        if (centavos < 0) {
+            text.append('-');
+        }
+        long whole = Math.abs(centavos / Money.CENTAVOS_PER_PESO);
+        long cents = Math.abs(centavos % Money.CENTAVOS_PER_PESO);
+        text.append(whole).append('.');
+        if (cents < 10) {
+            text.append('0');
+        }
+        return text.append(cents).toString();
+    }
+
+    // Escapes quotes, backslashes and control characters
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
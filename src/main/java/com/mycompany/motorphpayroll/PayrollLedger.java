@@ -0,0 +1,862 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+// This class keeps every finalized payroll run in an append-only ledger file, so past payslips,
+// year-to-date totals and the 13th month pay are read back instead of recomputed from the punches
+//
+// payroll_ledger.bin (next to the attendance file, or -Dmotorph.ledger=...):
+//   header:   magic "MPHL", format version, record size, 0, number of committed records, 0
+//   records:  RECORD_SIZE bytes each, one per employee-month, in the order they were finalized
+//             CRC32C of the rest of the record, employee ID, year, month, time finalized,
+//             per week: minutes worked, late minutes, gross, late deduction, SSS, Pag-IBIG,
+//             PhilHealth, net pay; then total net, tax, allowances, final net, hourly rate and
+//             basic salary. Amounts are centavos (see Money).
+// A run is appended in one go: the records are written and forced to disk, and only then is the
+// committed count in the header raised. Records after the committed count are from a run that
+// never finished (e.g. the power went out) and are cut off the next time a writer opens it,
+// so a run is either all in the ledger or not at all. The CRC catches records damaged later:
+// a damaged record is reported and left out (of the index, the totals and a compacted ledger),
+// so the rest of the ledger stays readable and the older record of its employee-month counts again.
+// Finalizing the same employee-month again adds a new record; the newest one counts.
+//
+// payroll_ledger.bin.idx is a memory-mapped hash table from (employee ID, year, month) to the
+// newest record, so a payslip is one slot lookup and one 320-byte read however long the ledger is:
+//   header:   magic "MPHI", format version, slot count, CRC of the last indexed record,
+//             number of records indexed, number of keys
+//   slots:    64-bit hash of the key (0 = empty) and record number, 16 bytes each
+// The index can always be rebuilt from the ledger. It is brought up to date when the ledger is
+// opened, and rebuilt when it is missing or was made for another ledger.
+// compact() rewrites the ledger with only the newest record of each employee-month.
+//
+// payroll_ledger.bin.lock is only there to be locked (the ledger itself is replaced by compact(),
+// so a lock on it would not stop a program that opens the new file):
+//   - a writer (finalize, compact) holds an exclusive lock from open() to close(). Only a writer
+//     changes the ledger or the index: it cuts off an unfinished run and brings the index up to date
+//   - a reader (payslip, ytd, yearend) never changes either file. It takes a shared lock, so no
+//     writer starts while it reads, and uses the index file only if it is already up to date,
+//     otherwise it builds its own index in memory. If a writer is busy the reader does not wait:
+//     it reads the runs committed so far, which a writer never changes, and ignores the rest
+class PayrollLedger implements Closeable {
+
+    static final int MAGIC = 0x4D50484C;        // "MPHL"
+    static final int INDEX_MAGIC = 0x4D504849;  // "MPHI"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 320;
+    static final int MAX_ID_BYTES = 16;
+
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final int MIN_SLOTS = 1024;
+    // A mapped buffer is addressed with an int, so the index stays under 2 GB (64 million employee-months)
+    private static final int MAX_SLOTS = 1 << 27;
+    // Records written or read with one system call
+    private static final int BATCH_RECORDS = 1024;
+
+    // Where each field is in a record
+    private static final int CRC = 0;
+    private static final int ID_LENGTH = 4;
+    private static final int ID = 5;
+    private static final int YEAR = 24;
+    private static final int MONTH = 28;
+    private static final int FINALIZED_AT = 32;
+    private static final int WEEKS = 40;
+    private static final int WEEK_SIZE = 56;
+    private static final int TOTAL_NET = 264;
+    private static final int TAX = 272;
+    private static final int ALLOWANCES = 280;
+    private static final int FINAL_NET = 288;
+    private static final int HOURLY_RATE = 296;
+    private static final int BASIC_SALARY = 304;
+
+    // Where each field is in a week
+    private static final int WORKED_MINUTES = 0;
+    private static final int LATE_MINUTES = 4;
+    private static final int GROSS = 8;
+    private static final int LATE_DEDUCTION = 16;
+    private static final int SSS = 24;
+    private static final int PAGIBIG = 32;
+    private static final int PHILHEALTH = 40;
+    private static final int NET_PAY = 48;
+
+    private final Path ledgerFile;
+    private final Path indexFile;
+    private final FileChannel ledger;
+    private final FileChannel lockChannel;
+    private final FileLock lock;       // exclusive for a writer; shared, or null if a writer is busy, for a reader
+    private final boolean writable;
+    private long committedRecords;
+
+    private FileChannel indexChannel;
+    private ByteBuffer index;          // the mapped index file, or a private copy in memory for a reader
+    private int slots;
+    private long keys;
+
+    private PayrollLedger(Path ledgerFile, FileChannel ledger, FileChannel lockChannel, FileLock lock, boolean writable) {
+        this.ledgerFile = ledgerFile;
+        this.indexFile = Path.of(ledgerFile + ".idx");
+        this.ledger = ledger;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        this.writable = writable;
+    }
+
+    // Opens the ledger to write to it (creating it if it does not exist) or only to read it
+    // A writer waits for other writers and readers to finish, a reader never waits (see above)
+    static PayrollLedger open(Path ledgerFile, boolean forWriting) throws IOException {
+        FileChannel lockChannel = FileChannel.open(Path.of(ledgerFile + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel channel = null;
+        try {
+            FileLock lock;
+            if (forWriting) {
+                lock = lockChannel.tryLock();
+                if (lock == null) {
+                    System.out.println("Waiting for another program to finish with the ledger...");
+                    lock = lockChannel.lock();
+                }
+                channel = FileChannel.open(ledgerFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } else {
+                lock = lockChannel.tryLock(0, Long.MAX_VALUE, true);
+                channel = FileChannel.open(ledgerFile, StandardOpenOption.READ);
+            }
+            PayrollLedger ledger = new PayrollLedger(ledgerFile, channel, lockChannel, lock, forWriting);
+            ledger.recover();
+            ledger.openIndex();
+            return ledger;
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    // Releases the lock too
+    @Override
+    public void close() throws IOException {
+        try {
+            closeFiles();
+        } finally {
+            lockChannel.close();
+        }
+    }
+
+    // Closes the ledger and the index but keeps the lock (compact() renames the ledger in between)
+    private void closeFiles() throws IOException {
+        try {
+            if (indexChannel != null && indexChannel.isOpen()) {
+                if (writable) {
+                    ((MappedByteBuffer) index).force();
+                }
+                indexChannel.close();
+            }
+        } finally {
+            ledger.close();
+        }
+    }
+
+    long records() {
+        return committedRecords;
+    }
+
+    long employeeMonths() {
+        return keys;
+    }
+
+    // Appends one finalized run and returns the number of records written
+    // Nothing is visible to readers (or survives a crash) until the whole run is on disk
+    long append(List<MonthlyPayroll> payrolls, Instant finalizedAt) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("The ledger was opened for reading: " + ledgerFile);
+        }
+        // The header on disk, not the count read at open(), decides where the run goes
+        long firstRecord = readCommittedRecords();
+        if (firstRecord != committedRecords) {
+            indexRecords(committedRecords, firstRecord);
+        }
+        long position = HEADER_SIZE + firstRecord * RECORD_SIZE;
+        ByteBuffer batch = ByteBuffer.allocate(RECORD_SIZE * BATCH_RECORDS);
+        for (MonthlyPayroll payroll : payrolls) {
+            encode(payroll, finalizedAt.toEpochMilli(), batch);
+            if (!batch.hasRemaining()) {
+                position += writeFully(batch, position);
+            }
+        }
+        writeFully(batch, position);
+        ledger.force(false);
+
+        // The run is committed only now
+        committedRecords = firstRecord + payrolls.size();
+        writeHeader(ledger, committedRecords);
+        ledger.force(false);
+
+        indexRecords(firstRecord, committedRecords);
+        return payrolls.size();
+    }
+
+    // The newest finalized payslip of the employee for the month, or null if it was never finalized
+    // Names and birthday come from the employees map, the ledger only keeps the ID and the pay
+    MonthlyPayroll payslip(String employeeId, int year, Month month, Map<String, Employee> employees) throws IOException {
+        ByteBuffer record = find(employeeId, year, month.getValue());
+        return record == null ? null : decode(record, employees);
+    }
+
+    // Year-to-date totals of one employee: twelve index lookups, whatever the size of the ledger
+    YearToDate yearToDate(String employeeId, int year) throws IOException {
+        YearToDate totals = new YearToDate(employeeId, year);
+        for (int month = 1; month <= 12; month++) {
+            ByteBuffer record = find(employeeId, year, month);
+            if (record != null) {
+                totals.add(record);
+            }
+        }
+        return totals;
+    }
+
+    // Year-to-date totals of every employee with a finalized month in the year, sorted by ID
+    // The ledger is read once from start to end; a record only counts if it is the newest one of its employee-month
+    List<YearToDate> yearEnd(int year) throws IOException {
+        TreeMap<String, YearToDate> totals = new TreeMap<>();
+        ByteBuffer batch = ByteBuffer.allocate(RECORD_SIZE * BATCH_RECORDS);
+        for (long first = 0; first < committedRecords; first += BATCH_RECORDS) {
+            int count = (int) Math.min(BATCH_RECORDS, committedRecords - first);
+            readFully(batch, HEADER_SIZE + first * RECORD_SIZE, count * RECORD_SIZE);
+            for (int i = 0; i < count; i++) {
+                ByteBuffer record = batch.slice(i * RECORD_SIZE, RECORD_SIZE);
+                if (record.getInt(YEAR) != year) {
+                    continue;
+                }
+                if (!intact(record)) {
+                    System.err.println("Skipping damaged ledger record " + (first + i));
+                    continue;
+                }
+                if (isNewest(first + i, hash(record))) {
+                    String employeeId = employeeId(record);
+                    totals.computeIfAbsent(employeeId, id -> new YearToDate(id, year)).add(record);
+                }
+            }
+        }
+        return new ArrayList<>(totals.values());
+    }
+
+    // Rewrites the ledger with only the newest record of each employee-month, in the same order
+    // The new ledger is written next to the old one and renamed over it, so a crash leaves one or the other
+    // The writer lock is held until the rename is done, so no run can be appended to the old file in between
+    static long[] compact(Path ledgerFile) throws IOException {
+        Path tempFile = ledgerFile.resolveSibling(ledgerFile.getFileName() + ".compact");
+        long before;
+        long kept = 0;
+        try (PayrollLedger old = open(ledgerFile, true)) {
+            try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                before = old.committedRecords;
+                writeHeader(out, 0);
+                ByteBuffer batch = ByteBuffer.allocate(RECORD_SIZE * BATCH_RECORDS);
+                ByteBuffer keptRecords = ByteBuffer.allocate(RECORD_SIZE * BATCH_RECORDS);
+                long position = HEADER_SIZE;
+                for (long first = 0; first < before; first += BATCH_RECORDS) {
+                    int count = (int) Math.min(BATCH_RECORDS, before - first);
+                    old.readFully(batch, HEADER_SIZE + first * RECORD_SIZE, count * RECORD_SIZE);
+                    keptRecords.clear();
+                    for (int i = 0; i < count; i++) {
+                        ByteBuffer record = batch.slice(i * RECORD_SIZE, RECORD_SIZE);
+                        if (!intact(record)) {
+                            System.err.println("Dropping damaged ledger record " + (first + i));
+                        } else if (old.isNewest(first + i, hash(record))) {
+                            keptRecords.put(record);
+                            kept++;
+                        }
+                    }
+                    keptRecords.flip();
+                    while (keptRecords.hasRemaining()) {
+                        position += out.write(keptRecords, position);
+                    }
+                }
+                out.force(false);
+                writeHeader(out, kept);
+                out.force(false);
+            }
+            // Some systems can't rename over or delete a file that is still open
+            old.closeFiles();
+            Files.move(tempFile, ledgerFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(Path.of(ledgerFile + ".idx"));
+        }
+        return new long[] {before, kept};
+    }
+
+    // ---- Reading and writing the ledger ----
+
+    // Reads the committed count; a writer also cuts off the records of a run that was never committed
+    // (a reader can't tell an unfinished run from one a writer is still appending, so it leaves them)
+    private void recover() throws IOException {
+        long size = ledger.size();
+        if (size < HEADER_SIZE && writable) {
+            writeHeader(ledger, 0);
+            ledger.force(false);
+            return;
+        }
+        if (size < HEADER_SIZE) {
+            // A writer has just created it
+            return;
+        }
+        committedRecords = readCommittedRecords();
+        long committedEnd = HEADER_SIZE + committedRecords * RECORD_SIZE;
+        if (size < committedEnd) {
+            throw new IOException("The ledger is shorter than its header says, it was cut off: " + ledgerFile);
+        }
+        if (size > committedEnd && writable) {
+            System.err.println("Discarding " + (size - committedEnd) + " bytes of an unfinished run at the end of " + ledgerFile);
+            ledger.truncate(committedEnd);
+            ledger.force(false);
+        }
+    }
+
+    private long readCommittedRecords() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != RECORD_SIZE) {
+            throw new IOException("Not a payroll ledger (or written by another version): " + ledgerFile);
+        }
+        return header.getLong(16);
+    }
+
+    private static void writeHeader(FileChannel channel, long committedRecords) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putLong(16, committedRecords);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    // Writes buffer[0, position) and returns the number of bytes written; the buffer is cleared after
+    private long writeFully(ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += ledger.write(buffer, position + written);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private void readFully(ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (ledger.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of ledger at offset " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+    }
+
+    // The CRC is not checked here, see intact()
+    private ByteBuffer readRecord(long record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        readFully(buffer, HEADER_SIZE + record * RECORD_SIZE, RECORD_SIZE);
+        return buffer;
+    }
+
+    // Adds one record at the buffer's position
+    private static void encode(MonthlyPayroll payroll, long finalizedAt, ByteBuffer buffer) {
+        byte[] id = payroll.employee.empId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Employee ID longer than " + MAX_ID_BYTES + " bytes: " + payroll.employee.empId);
+        }
+        int start = buffer.position();
+        ByteBuffer record = buffer.slice(start, RECORD_SIZE);
+        record.put(ID_LENGTH, (byte) id.length);
+        record.put(ID, id);
+        record.putInt(YEAR, payroll.year);
+        record.putInt(MONTH, payroll.month.getValue());
+        record.putLong(FINALIZED_AT, finalizedAt);
+        for (int w = 0; w < payroll.weeks.length; w++) {
+            WeeklyPayroll week = payroll.weeks[w];
+            int at = WEEKS + w * WEEK_SIZE;
+            record.putInt(at + WORKED_MINUTES, Math.toIntExact(week.workedMinutes));
+            record.putInt(at + LATE_MINUTES, Math.toIntExact(week.lateMinutes));
+            record.putLong(at + GROSS, week.grossSalary);
+            record.putLong(at + LATE_DEDUCTION, week.lateDeduction);
+            record.putLong(at + SSS, week.sss);
+            record.putLong(at + PAGIBIG, week.pagibig);
+            record.putLong(at + PHILHEALTH, week.philhealth);
+            record.putLong(at + NET_PAY, week.netPay);
+        }
+        record.putLong(TOTAL_NET, payroll.totalNet);
+        record.putLong(TAX, payroll.withholdingTax);
+        record.putLong(ALLOWANCES, payroll.allowances);
+        record.putLong(FINAL_NET, payroll.finalNet);
+        record.putLong(HOURLY_RATE, Money.centavos(payroll.employee.hourlyRate));
+        record.putLong(BASIC_SALARY, Money.centavos(payroll.employee.basicSalary));
+        record.putInt(CRC, crc(record));
+        buffer.position(start + RECORD_SIZE);
+    }
+
+    private static MonthlyPayroll decode(ByteBuffer record, Map<String, Employee> employees) {
+        String employeeId = employeeId(record);
+        int year = record.getInt(YEAR);
+        Month month = Month.of(record.getInt(MONTH));
+        Employee employee = employees == null ? null : employees.get(employeeId);
+        if (employee == null) {
+            // No longer in employee_data.csv; the pay is still in the ledger
+            employee = new Employee(employeeId, "", "", "", "", "", "", Money.pesos(record.getLong(HOURLY_RATE)),
+                    0, 0, 0, Money.pesos(record.getLong(BASIC_SALARY)));
+        }
+
+        LocalDate firstMonday = MotorPHPayroll.getFirstMondayOfMonth(year, month.getValue());
+        WeeklyPayroll[] weeks = new WeeklyPayroll[4];
+        for (int w = 0; w < 4; w++) {
+            int at = WEEKS + w * WEEK_SIZE;
+            LocalDate startDate = firstMonday.plusWeeks(w);
+            weeks[w] = new WeeklyPayroll(startDate, startDate.plusDays(4),
+                    record.getInt(at + WORKED_MINUTES), record.getLong(at + GROSS),
+                    record.getInt(at + LATE_MINUTES), record.getLong(at + LATE_DEDUCTION),
+                    record.getLong(at + SSS), record.getLong(at + PAGIBIG),
+                    record.getLong(at + PHILHEALTH), record.getLong(at + NET_PAY));
+        }
+        return new MonthlyPayroll(employee, year, month, weeks, record.getLong(TOTAL_NET),
+                record.getLong(TAX), record.getLong(ALLOWANCES), record.getLong(FINAL_NET));
+    }
+
+    private static String employeeId(ByteBuffer record) {
+        byte[] id = new byte[idLength(record)];
+        record.get(ID, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    // The ID length byte, kept inside 0..MAX_ID_BYTES so a damaged byte can't read past the ID field
+    private static int idLength(ByteBuffer record) {
+        return Math.min(record.get(ID_LENGTH) & 0xff, MAX_ID_BYTES);
+    }
+
+    // CRC32C of everything in the record after the CRC field
+    private static int crc(ByteBuffer record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.slice(CRC + 4, RECORD_SIZE - CRC - 4));
+        return (int) crc.getValue();
+    }
+
+    // False if the record was damaged after it was written
+    private static boolean intact(ByteBuffer record) {
+        return record.getInt(CRC) == crc(record);
+    }
+
+    // ---- The index ----
+
+    // 64-bit FNV-1a of the ID bytes, the year and the month; never 0, which marks an empty slot
+    private static long hash(byte[] id, int idLength, int year, int month) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < idLength; i++) {
+            hash = (hash ^ (id[i] & 0xff)) * 0x100000001b3L;
+        }
+        hash = (hash ^ year) * 0x100000001b3L;
+        hash = (hash ^ month) * 0x100000001b3L;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long hash(ByteBuffer record) {
+        byte[] id = new byte[MAX_ID_BYTES];
+        int length = idLength(record);
+        record.get(ID, id, 0, length);
+        return hash(id, length, record.getInt(YEAR), record.getInt(MONTH));
+    }
+
+    private static boolean sameKey(ByteBuffer record, byte[] id, int year, int month) {
+        if (record.get(ID_LENGTH) != id.length || record.getInt(YEAR) != year || record.getInt(MONTH) != month) {
+            return false;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (record.get(ID + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The newest record of the employee-month, already read and checked, or null
+    // A record damaged since it was indexed is reported and treated as missing
+    private ByteBuffer find(String employeeId, int year, int month) throws IOException {
+        byte[] id = employeeId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            return null;
+        }
+        long hash = hash(id, id.length, year, month);
+        int mask = slots - 1;
+        for (int slot = (int) (hash & mask); ; slot = (slot + 1) & mask) {
+            long slotHash = index.getLong(slotOffset(slot));
+            if (slotHash == 0) {
+                return null;
+            }
+            if (slotHash == hash) {
+                long recordNumber = index.getLong(slotOffset(slot) + 8);
+                ByteBuffer record = readRecord(recordNumber);
+                if (!intact(record)) {
+                    System.err.println("Skipping damaged ledger record " + recordNumber);
+                } else if (sameKey(record, id, year, month)) {
+                    return record;
+                }
+            }
+        }
+    }
+
+    // True if the index points at this record, i.e. no later run finalized the same employee-month
+    // The slot with the same hash and the same record number is this key, so no record has to be read
+    private boolean isNewest(long record, long hash) {
+        int mask = slots - 1;
+        for (int slot = (int) (hash & mask); ; slot = (slot + 1) & mask) {
+            long slotHash = index.getLong(slotOffset(slot));
+            if (slotHash == 0) {
+                return false;
+            }
+            if (slotHash == hash && index.getLong(slotOffset(slot) + 8) == record) {
+                return true;
+            }
+        }
+    }
+
+    private static int slotOffset(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // Maps the index and adds any records it does not have yet, or rebuilds it if it does not match the ledger
+    // A reader only maps the file when it is complete and no writer can change it; otherwise it builds
+    // its own index in memory
+    private void openIndex() throws IOException {
+        boolean useFile = writable || lock != null;
+        if (useFile && Files.exists(indexFile)) {
+            try {
+                FileChannel channel = writable
+                        ? FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                        : FileChannel.open(indexFile, StandardOpenOption.READ);
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), INDEX_HEADER_SIZE));
+                int savedSlots = header.remaining() == INDEX_HEADER_SIZE ? header.getInt(8) : 0;
+                long indexed = savedSlots > 0 ? header.getLong(16) : -1;
+                boolean matches = savedSlots >= MIN_SLOTS && savedSlots <= MAX_SLOTS && Integer.bitCount(savedSlots) == 1
+                        && header.getInt(0) == INDEX_MAGIC && header.getInt(4) == VERSION
+                        && channel.size() == slotOffset(savedSlots)
+                        && indexed >= 0 && indexed <= committedRecords
+                        && (indexed == 0 || header.getInt(12) == readRecord(indexed - 1).getInt(CRC))
+                        && (writable || indexed == committedRecords);
+                if (matches) {
+                    indexChannel = channel;
+                    index = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    slots = savedSlots;
+                    keys = index.getLong(24);
+                    if (indexed < committedRecords) {
+                        indexRecords(indexed, committedRecords);
+                    }
+                    return;
+                }
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Rebuilding unreadable ledger index " + indexFile + ": " + e.getMessage());
+            }
+        }
+        rebuildIndex(slotsFor(committedRecords));
+        indexRecords(0, committedRecords);
+    }
+
+    private static int slotsFor(long entries) {
+        long wanted = Math.max(MIN_SLOTS, entries * 2);
+        if (wanted > MAX_SLOTS) {
+            throw new IllegalStateException("Too many employee-months for the ledger index: " + entries);
+        }
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+
+    // A new, empty index with the given number of slots; a file for a writer, memory for a reader
+    private void rebuildIndex(int newSlots) throws IOException {
+        if (indexChannel != null) {
+            indexChannel.close();
+            indexChannel = null;
+        }
+        if (!writable) {
+            index = ByteBuffer.allocate(slotOffset(newSlots));
+            index.putInt(0, INDEX_MAGIC).putInt(4, VERSION).putInt(8, newSlots);
+            slots = newSlots;
+            keys = 0;
+            return;
+        }
+        indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, slotOffset(newSlots));
+        index.putInt(0, INDEX_MAGIC).putInt(4, VERSION).putInt(8, newSlots);
+        slots = newSlots;
+        keys = 0;
+    }
+
+    // Points the index at records [from, to) of the ledger, then saves the header
+    private void indexRecords(long from, long to) throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(RECORD_SIZE * BATCH_RECORDS);
+        int lastCrc = index.getInt(12);
+        for (long first = from; first < to; first += BATCH_RECORDS) {
+            int count = (int) Math.min(BATCH_RECORDS, to - first);
+            readFully(batch, HEADER_SIZE + first * RECORD_SIZE, count * RECORD_SIZE);
+            for (int i = 0; i < count; i++) {
+                ByteBuffer record = batch.slice(i * RECORD_SIZE, RECORD_SIZE);
+                lastCrc = record.getInt(CRC);
+                if (!intact(record)) {
+                    System.err.println("Skipping damaged ledger record " + (first + i));
+                    continue;
+                }
+                if ((keys + 1) * 2 > slots) {
+                    grow();
+                }
+                insert(hash(record), first + i, record);
+            }
+        }
+        index.putInt(12, lastCrc);
+        index.putLong(16, to);
+        index.putLong(24, keys);
+        if (writable) {
+            ((MappedByteBuffer) index).force();
+        }
+    }
+
+    // Puts the record in its key's slot, replacing an older record of the same employee-month
+    // (or one with the same hash that was damaged since it was indexed, which can't be checked any more)
+    private void insert(long hash, long record, ByteBuffer recordBytes) throws IOException {
+        byte[] id = new byte[idLength(recordBytes)];
+        recordBytes.get(ID, id);
+        int year = recordBytes.getInt(YEAR);
+        int month = recordBytes.getInt(MONTH);
+        int mask = slots - 1;
+        for (int slot = (int) (hash & mask); ; slot = (slot + 1) & mask) {
+            int offset = slotOffset(slot);
+            long slotHash = index.getLong(offset);
+            if (slotHash == 0) {
+                index.putLong(offset, hash);
+                index.putLong(offset + 8, record);
+                keys++;
+                return;
+            }
+            if (slotHash == hash) {
+                ByteBuffer old = readRecord(index.getLong(offset + 8));
+                if (!intact(old) || sameKey(old, id, year, month)) {
+                    index.putLong(offset + 8, record);
+                    return;
+                }
+            }
+        }
+    }
+
+    // Doubles the slots; the keys are all different, so they are moved without reading the ledger
+    private void grow() throws IOException {
+        int oldSlots = slots;
+        if (oldSlots == MAX_SLOTS) {
+            throw new IllegalStateException("Too many employee-months for the ledger index: " + keys);
+        }
+        long[] hashes = new long[(int) keys];
+        long[] records = new long[(int) keys];
+        int n = 0;
+        for (int slot = 0; slot < oldSlots; slot++) {
+            long hash = index.getLong(slotOffset(slot));
+            if (hash != 0) {
+                hashes[n] = hash;
+                records[n] = index.getLong(slotOffset(slot) + 8);
+                n++;
+            }
+        }
+        int lastCrc = index.getInt(12);
+        long indexed = index.getLong(16);
+        rebuildIndex(oldSlots * 2);
+        int mask = slots - 1;
+        for (int i = 0; i < n; i++) {
+            int slot = (int) (hashes[i] & mask);
+            while (index.getLong(slotOffset(slot)) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index.putLong(slotOffset(slot), hashes[i]);
+            index.putLong(slotOffset(slot) + 8, records[i]);
+        }
+        keys = n;
+        index.putInt(12, lastCrc);
+        index.putLong(16, indexed);
+    }
+
+    // ---- Totals ----
+
+    // The sums of the newest record of each month of one year, in centavos
+    static class YearToDate {
+        final String employeeId;
+        final int year;
+        int months;
+        long gross;
+        long lateDeduction;
+        long sss;
+        long pagibig;
+        long philhealth;
+        long withholdingTax;
+        long allowances;
+        long finalNet;
+        long basicSalary;  // of the last month added, for display
+
+        YearToDate(String employeeId, int year) {
+            this.employeeId = employeeId;
+            this.year = year;
+        }
+
+        void add(ByteBuffer record) {
+            months++;
+            for (int w = 0; w < 4; w++) {
+                int at = WEEKS + w * WEEK_SIZE;
+                gross += record.getLong(at + GROSS);
+                lateDeduction += record.getLong(at + LATE_DEDUCTION);
+                sss += record.getLong(at + SSS);
+                pagibig += record.getLong(at + PAGIBIG);
+                philhealth += record.getLong(at + PHILHEALTH);
+            }
+            withholdingTax += record.getLong(TAX);
+            allowances += record.getLong(ALLOWANCES);
+            finalNet += record.getLong(FINAL_NET);
+            basicSalary = record.getLong(BASIC_SALARY);
+        }
+
+        // 13th month pay: the basic pay earned in the year (gross less late deductions, no allowances)
+        // divided by 12, rounded to the centavo
+        long thirteenthMonth() {
+            return Money.divideRounded(gross - lateDeduction, 12);
+        }
+    }
+
+    // ---- Command line ----
+
+    // Usage: finalize <year> <month> [toMonth]
+    // Computes every employee like batch does and appends the run to the ledger
+    static void finalizeRun(PayrollConfig config, String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: finalize <year> <month> [toMonth]");
+            return;
+        }
+        int year;
+        Month fromMonth;
+        Month toMonth;
+        try {
+            year = Integer.parseInt(args[1].trim());
+            fromMonth = PayrollServer.parseMonth(args[2]);
+            toMonth = args.length > 3 ? PayrollServer.parseMonth(args[3]) : fromMonth;
+        } catch (RuntimeException e) {
+            System.out.println("Invalid year or month: " + e.getMessage());
+            return;
+        }
+        if (toMonth.compareTo(fromMonth) < 0) {
+            System.out.println("The last month must not be before the first month.");
+            return;
+        }
+
+        PayrollData data = PayrollData.load(config.employeeFile, config.attendanceFile);
+        data.compact();
+        List<MonthlyPayroll> results = PayrollBatch.computeAll(data.store(), data.contributionRules, year, fromMonth, toMonth);
+        try (PayrollLedger ledger = open(Path.of(config.ledgerFile), true)) {
+            long written = ledger.append(results, Instant.now());
+            System.out.printf("Finalized %d payslips into %s (%d records, %d employee-months in the ledger)%n",
+                    written, config.ledgerFile, ledger.records(), ledger.employeeMonths());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing payroll ledger: " + e.getMessage());
+        }
+    }
+
+    // Usage: ledger payslip <employeeId> <year> <month>
+    //        ledger ytd <employeeId> <year>
+    //        ledger yearend <year>
+    //        ledger compact
+    static void run(PayrollConfig config, String[] args) {
+        String usage = "Usage: ledger payslip <employeeId> <year> <month> | ledger ytd <employeeId> <year>"
+                + " | ledger yearend <year> | ledger compact";
+        if (args.length < 2) {
+            System.out.println(usage);
+            return;
+        }
+        Path ledgerFile = Path.of(config.ledgerFile);
+        String command = args[1].trim().toLowerCase();
+        try {
+            if (command.equals("compact")) {
+                long[] counts = compact(ledgerFile);
+                System.out.printf("Compacted %s: %d records, %d kept%n", ledgerFile, counts[0], counts[1]);
+                // Opening it again builds the new index
+                open(ledgerFile, true).close();
+                return;
+            }
+            if (!Files.exists(ledgerFile)) {
+                System.out.println("No payroll has been finalized yet (" + ledgerFile + " does not exist).");
+                return;
+            }
+            try (PayrollLedger ledger = open(ledgerFile, false)) {
+                if (command.equals("payslip") && args.length == 5) {
+                    HashMap<String, Employee> employees = MotorPHPayroll.loadEmployeeData(config.employeeFile);
+                    MonthlyPayroll payroll = ledger.payslip(args[2].trim(), Integer.parseInt(args[3].trim()),
+                            PayrollServer.parseMonth(args[4]), employees);
+                    if (payroll == null) {
+                        System.out.println("No finalized payslip for that employee and month.");
+                    } else {
+                        MotorPHPayroll.printPayroll(payroll);
+                    }
+                } else if (command.equals("ytd") && args.length == 4) {
+                    YearToDate totals = ledger.yearToDate(args[2].trim(), Integer.parseInt(args[3].trim()));
+                    printYearToDate(totals);
+                } else if (command.equals("yearend") && args.length == 3) {
+                    printYearEnd(ledger.yearEnd(Integer.parseInt(args[2].trim())));
+                } else {
+                    System.out.println(usage);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading payroll ledger: " + e.getMessage());
+        }
+    }
+
+    private static void printYearToDate(YearToDate totals) {
+        System.out.println("\nYear to date " + totals.year + " for Employee #: " + totals.employeeId
+                + " (" + totals.months + " finalized months)\n");
+        System.out.printf("Gross Salary: %.2f%n", Money.pesos(totals.gross));
+        System.out.printf("Late Deductions: %.2f%n", Money.pesos(totals.lateDeduction));
+        System.out.printf("SSS: %.2f%n", Money.pesos(totals.sss));
+        System.out.printf("Pag-IBIG: %.2f%n", Money.pesos(totals.pagibig));
+        System.out.printf("Philhealth: %.2f%n", Money.pesos(totals.philhealth));
+        System.out.printf("Withholding Tax: %.2f%n", Money.pesos(totals.withholdingTax));
+        System.out.printf("Allowances: %.2f%n", Money.pesos(totals.allowances));
+        System.out.printf("Final Net: %.2f%n", Money.pesos(totals.finalNet));
+        System.out.printf("13th Month Pay: %.2f%n", Money.pesos(totals.thirteenthMonth()));
+    }
+
+    // One line per employee, then the company totals
+    private static void printYearEnd(List<YearToDate> employees) {
+        long outputStart = PayrollMetrics.start();
+        System.out.printf("%-8s %6s %14s %12s %12s %12s %14s %12s%n",
+                "Emp #", "Months", "Gross", "Late", "Contrib.", "Tax", "Final Net", "13th Month");
+        YearToDate company = new YearToDate("", 0);
+        long companyThirteenth = 0;
+        for (YearToDate e : employees) {
+            long contributions = e.sss + e.pagibig + e.philhealth;
+            System.out.printf("%-8s %6d %14.2f %12.2f %12.2f %12.2f %14.2f %12.2f%n",
+                    e.employeeId, e.months, Money.pesos(e.gross), Money.pesos(e.lateDeduction),
+                    Money.pesos(contributions), Money.pesos(e.withholdingTax), Money.pesos(e.finalNet),
+                    Money.pesos(e.thirteenthMonth()));
+            company.gross += e.gross;
+            company.lateDeduction += e.lateDeduction;
+            company.sss += contributions;
+            company.withholdingTax += e.withholdingTax;
+            company.finalNet += e.finalNet;
+            companyThirteenth += e.thirteenthMonth();
+        }
+        System.out.println("------------------------");
+        System.out.printf("COMPANY (%d employees): gross %.2f, late %.2f, contributions %.2f, tax %.2f, final net %.2f, 13th month %.2f%n",
+                employees.size(), Money.pesos(company.gross), Money.pesos(company.lateDeduction), Money.pesos(company.sss),
+                Money.pesos(company.withholdingTax), Money.pesos(company.finalNet), Money.pesos(companyThirteenth));
+        PayrollMetrics.phase(PayrollMetrics.Phase.OUTPUT, outputStart);
+    }
+}
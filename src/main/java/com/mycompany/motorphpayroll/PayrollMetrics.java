@@ -0,0 +1,161 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// This class counts what the loaders and the payroll computation did during one run
+//   - rows read from each file, and attendance rows per second
+//   - rows skipped, by reason
+//   - time spent in each phase: CSV read, date/time parsing, aggregation, deductions, output
+// Run with -Dmotorph.metrics=metrics.json (or -Dmotorph.metrics=- for the console) to turn it on;
+// the summary is written as JSON when the program ends.
+// The row and skip counts are cheap (added once per file chunk), so they are always kept.
+// The phase timings call System.nanoTime() around small pieces of work, so they only run when
+// metrics are on. ENABLED is a static final, so when it is false the JIT removes the timing code.
+// The counters are LongAdders because the parallel loader and the batch add to them from many threads.
+// The mapped loaders read and parse each row in a single pass, so for them the whole pass is
+// counted as CSV read; date/time parsing is measured separately only in the OpenCSV loader.
+final class PayrollMetrics {
+
+    enum Phase {
+        CSV_READ("csvRead"),
+        DATE_TIME_PARSING("dateTimeParsing"),
+        AGGREGATION("aggregation"),
+        DEDUCTIONS("deductions"),
+        OUTPUT("output");
+
+        final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    enum SkipReason {
+        INVALID_DATE("invalidDate"),
+        INVALID_TIME("invalidTime"),
+        BLANK_LINE("blankLine"),
+        MALFORMED_CSV("malformedCsv"),   // OpenCSV gave up on the rest of the file
+        MALFORMED_ROW("malformedRow");   // a row with missing columns that the watch mode skipped
+
+        final String key;
+
+        SkipReason(String key) {
+            this.key = key;
+        }
+    }
+
+    static final String OUTPUT_FILE = System.getProperty("motorph.metrics");
+    static final boolean ENABLED = OUTPUT_FILE != null && !OUTPUT_FILE.trim().isEmpty();
+
+    private static final LongAdder employeeRows = new LongAdder();
+    private static final LongAdder attendanceRows = new LongAdder();
+    private static final LongAdder attendanceLoadNanos = new LongAdder();
+    private static final LongAdder payrollsComputed = new LongAdder();
+    private static final LongAdder[] skippedRows = adders(SkipReason.values().length);
+    private static final LongAdder[] phaseNanos = adders(Phase.values().length);
+
+    private PayrollMetrics() {
+    }
+
+    // Returns the start time for phase(), or 0 when metrics are off
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    // Adds the time since start to the phase
+    static void phase(Phase phase, long startNanos) {
+        if (ENABLED) {
+            phaseNanos[phase.ordinal()].add(System.nanoTime() - startNanos);
+        }
+    }
+
+    static void employeeRowsRead(long rows) {
+        employeeRows.add(rows);
+    }
+
+    static void attendanceRowsRead(long rows) {
+        attendanceRows.add(rows);
+    }
+
+    // The wall-clock time of one whole attendance load, for the rows per second figure
+    static void attendanceLoaded(long nanos) {
+        attendanceLoadNanos.add(nanos);
+    }
+
+    static void skipped(SkipReason reason) {
+        skippedRows[reason.ordinal()].increment();
+    }
+
+    static void skipped(SkipReason reason, long rows) {
+        skippedRows[reason.ordinal()].add(rows);
+    }
+
+    static void payrollComputed() {
+        if (ENABLED) {
+            payrollsComputed.increment();
+        }
+    }
+
+    // Everything counted so far as one JSON object
+    static String summaryJson() {
+        double loadSeconds = attendanceLoadNanos.sum() / 1e9;
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"employeeRows\":").append(employeeRows.sum());
+        json.append(",\"attendanceRows\":").append(attendanceRows.sum());
+        json.append(",\"attendanceLoadSeconds\":").append(String.format(Locale.ROOT, "%.6f", loadSeconds));
+        json.append(",\"attendanceRowsPerSecond\":").append(String.format(Locale.ROOT, "%.1f",
+                loadSeconds > 0 ? attendanceRows.sum() / loadSeconds : 0.0));
+        json.append(",\"payrollsComputed\":").append(payrollsComputed.sum());
+
+        json.append(",\"skippedRows\":{");
+        for (SkipReason reason : SkipReason.values()) {
+            if (reason.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(reason.key).append("\":").append(skippedRows[reason.ordinal()].sum());
+        }
+        json.append('}');
+
+        // Summed over all threads, so a parallel phase can add up to more than the wall-clock time
+        json.append(",\"phaseSeconds\":{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(phase.key).append("\":")
+                    .append(String.format(Locale.ROOT, "%.6f", phaseNanos[phase.ordinal()].sum() / 1e9));
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    // Writes the summary to the file given with -Dmotorph.metrics, or to the console for "-"
+    static void writeSummary() {
+        if (!ENABLED) {
+            return;
+        }
+        String json = summaryJson();
+        if (OUTPUT_FILE.trim().equals("-")) {
+            System.err.println(json);
+            return;
+        }
+        try {
+            Files.writeString(Path.of(OUTPUT_FILE.trim()), json + System.lineSeparator(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics to " + OUTPUT_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,236 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Month;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// This class writes the payroll register of the whole company to a file, as CSV or as JSON Lines
+// Every employee's months are computed and turned into text on the fork-join pool, and the text is
+// written as soon as it is that employee's turn. Only a window of WINDOW_PER_CORE employees per core
+// is ever in progress: the oldest one is written before a new one is started, so the memory used
+// does not grow with the number of employees, and the file is always in employee ID order and
+// then month order, no matter which thread finishes first.
+//
+// CSV: one row per week and one "month" row with the monthly totals, per employee-month
+//   employee_id,last_name,first_name,year,month,period,start_date,end_date,hours_worked,gross_salary,
+//   late_hours,late_deduction,sss,pagibig,philhealth,net_pay,withholding_tax,allowances,final_net
+// JSON Lines: one payslip object per employee-month, the same JSON as the payslip server returns
+class PayrollRegister {
+
+    enum Format {
+        CSV,
+        JSON_LINES
+    }
+
+    // Employees in progress per core; enough to keep every core busy while the writer catches up
+    private static final int WINDOW_PER_CORE = 16;
+
+    static final String CSV_HEADER = "employee_id,last_name,first_name,year,month,period,start_date,end_date,"
+            + "hours_worked,gross_salary,late_hours,late_deduction,sss,pagibig,philhealth,net_pay,"
+            + "withholding_tax,allowances,final_net";
+
+    // Usage: export <year> <month> [toMonth] <file.csv|file.jsonl>   e.g. export 2024 june december register.csv
+    static void run(String employeeFile, String attendanceFile, String[] args) {
+        if (args.length < 4 || args.length > 5) {
+            System.out.println("Usage: export <year> <month> [toMonth] <file.csv|file.jsonl>");
+            return;
+        }
+
+        int year;
+        Month fromMonth;
+        Month toMonth;
+        try {
+            year = Integer.parseInt(args[1].trim());
+            fromMonth = Month.valueOf(args[2].trim().toUpperCase());
+            toMonth = args.length > 4 ? Month.valueOf(args[3].trim().toUpperCase()) : fromMonth;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid year or month: " + e.getMessage());
+            return;
+        }
+        if (toMonth.compareTo(fromMonth) < 0) {
+            System.out.println("The last month must not be before the first month.");
+            return;
+        }
+
+        Path outputFile = Path.of(args[args.length - 1]);
+        Format format = formatOf(outputFile);
+        if (format == null) {
+            System.out.println("The register file must end in .csv or .jsonl");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        PayrollData data = PayrollData.load(employeeFile, attendanceFile);
+        data.compact();
+        long loadedNanos = System.nanoTime();
+
+        // Written to a temporary file and renamed, so a failed export never leaves half a register
+        Path tempFile = outputFile.resolveSibling(outputFile.getFileName() + ".tmp");
+        long employeeMonths;
+        try {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(tempFile), StandardCharsets.UTF_8), 1 << 16)) {
+                employeeMonths = export(data.store(), data.contributionRules, year, fromMonth, toMonth, format, out);
+            }
+            Files.move(tempFile, outputFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing payroll register " + outputFile + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ignored) {
+                // nothing more to clean up
+            }
+            return;
+        }
+
+        double loadSeconds = (loadedNanos - startNanos) / 1e9;
+        double exportSeconds = (System.nanoTime() - loadedNanos) / 1e9;
+        System.out.printf("Exported %d employee-months to %s%n", employeeMonths, outputFile);
+        System.out.printf("Load time: %.3f s, export time: %.3f s (%.1f employee-months per second)%n",
+                loadSeconds, exportSeconds, employeeMonths / Math.max(exportSeconds, 1e-9));
+    }
+
+    static Format formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        }
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return Format.JSON_LINES;
+        }
+        return null;
+    }
+
+    // Writes every employee for every month from fromMonth to toMonth and returns the number of employee-months
+    // The writer is not closed, the caller owns it
+    static long export(PayrollStore store, ContributionRules rules, int year, Month fromMonth, Month toMonth,
+                       Format format, Writer out) throws IOException {
+        // The store is in ID order; IDs that are only in the attendance file are left out
+        int[] employees = IntStream.range(0, store.size()).filter(store::hasEmployee).toArray();
+        int months = toMonth.getValue() - fromMonth.getValue() + 1;
+
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER);
+            out.write('\n');
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int window = cores * WINDOW_PER_CORE;
+        ArrayDeque<CompletableFuture<String>> inProgress = new ArrayDeque<>(window);
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        try {
+            int next = 0;
+            while (next < employees.length || !inProgress.isEmpty()) {
+                // Keep the window full...
+                while (next < employees.length && inProgress.size() < window) {
+                    int e = employees[next++];
+                    inProgress.add(CompletableFuture.supplyAsync(
+                            () -> registerText(store, e, rules, year, fromMonth, months, format), pool));
+                }
+                // ...and write the oldest employee, waiting for it if it is not done yet
+                String text;
+                try {
+                    text = inProgress.poll().join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+                long outputStart = PayrollMetrics.start();
+                out.write(text);
+                PayrollMetrics.phase(PayrollMetrics.Phase.OUTPUT, outputStart);
+            }
+        } finally {
+            for (CompletableFuture<String> future : inProgress) {
+                future.cancel(false);
+            }
+            pool.shutdown();
+        }
+        return (long) employees.length * months;
+    }
+
+    // All the register lines of employee e, computed and formatted on a pool thread
+    private static String registerText(PayrollStore store, int e, ContributionRules rules, int year,
+                                       Month fromMonth, int months, Format format) {
+        Employee employee = store.employee(e);
+        EmployeeAttendance attendance = store.attendance(e);
+        StringBuilder text = new StringBuilder(format == Format.CSV ? 1024 * months : 1536 * months);
+        for (int m = 0; m < months; m++) {
+            MonthlyPayroll payroll = MotorPHPayroll.computeMonthlyPayroll(employee, attendance, rules, year, fromMonth.plus(m));
+            if (format == Format.CSV) {
+                appendCsv(text, payroll);
+            } else {
+                text.append(PayrollJson.payslip(payroll)).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    // The month row adds up the weeks in centavos and minutes, so it matches the week rows exactly
+    private static void appendCsv(StringBuilder csv, MonthlyPayroll payroll) {
+        long minutes = 0, gross = 0, lateMinutes = 0, lateDeduction = 0, sss = 0, pagibig = 0, philhealth = 0;
+        for (int i = 0; i < payroll.weeks.length; i++) {
+            WeeklyPayroll week = payroll.weeks[i];
+            appendCsvRow(csv, payroll, "week" + (i + 1), week.startDate.toString(), week.endDate.toString(),
+                    week.workedMinutes, week.grossSalary, week.lateMinutes, week.lateDeduction,
+                    week.sss, week.pagibig, week.philhealth, week.netPay);
+            csv.append(",,,\n");
+            minutes += week.workedMinutes;
+            gross += week.grossSalary;
+            lateMinutes += week.lateMinutes;
+            lateDeduction += week.lateDeduction;
+            sss += week.sss;
+            pagibig += week.pagibig;
+            philhealth += week.philhealth;
+        }
+        WeeklyPayroll first = payroll.weeks[0];
+        WeeklyPayroll last = payroll.weeks[payroll.weeks.length - 1];
+        appendCsvRow(csv, payroll, "month", first.startDate.toString(), last.endDate.toString(),
+                minutes, gross, lateMinutes, lateDeduction, sss, pagibig, philhealth, payroll.totalNet);
+        csv.append(',').append(PayrollJson.pesos(payroll.withholdingTax));
+        csv.append(',').append(PayrollJson.pesos(payroll.allowances));
+        csv.append(',').append(PayrollJson.pesos(payroll.finalNet));
+        csv.append('\n');
+    }
+
+    // Everything up to net_pay; the caller adds the last three columns
+    // Amounts are in centavos and hours in minutes, like in WeeklyPayroll
+    private static void appendCsvRow(StringBuilder csv, MonthlyPayroll payroll, String period, String startDate,
+                                     String endDate, long minutes, long gross, long lateMinutes, long lateDeduction,
+                                     long sss, long pagibig, long philhealth, long netPay) {
+        Employee employee = payroll.employee;
+        appendCsvField(csv, employee.empId);
+        csv.append(',');
+        appendCsvField(csv, employee.lastName);
+        csv.append(',');
+        appendCsvField(csv, employee.firstName);
+        csv.append(',').append(payroll.year);
+        csv.append(',').append(payroll.month.getValue());
+        csv.append(',').append(period);
+        csv.append(',').append(startDate);
+        csv.append(',').append(endDate);
+        csv.append(',').append(PayrollJson.twoDecimals(Money.hours(minutes)));
+        csv.append(',').append(PayrollJson.pesos(gross));
+        csv.append(',').append(PayrollJson.twoDecimals(Money.hours(lateMinutes)));
+        csv.append(',').append(PayrollJson.pesos(lateDeduction));
+        csv.append(',').append(PayrollJson.pesos(sss));
+        csv.append(',').append(PayrollJson.pesos(pagibig));
+        csv.append(',').append(PayrollJson.pesos(philhealth));
+        csv.append(',').append(PayrollJson.pesos(netPay));
+    }
+
+    // Quotes a field that has a comma, a quote or a line break, like OpenCSV's writer does
+    private static void appendCsvField(StringBuilder csv, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            csv.append(value);
+            return;
+        }
+        csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
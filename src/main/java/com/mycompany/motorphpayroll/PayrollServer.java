@@ -0,0 +1,188 @@
+package com.mycompany.motorphpayroll;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Month;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// This class serves payslips and employee lookups over HTTP on the local machine
+//     GET /employees/{id}                    the employee's details
+//     GET /payslips/{id}/{month}[?year=2024]  the weekly breakdown and monthly totals
+//     GET /health                            "ok", the number of employees and the cache counters
+// The month can be a name (june) or a number (6). All answers are JSON.
+// Both files are loaded once at startup; a request only does binary searches on data that is
+// already in memory, so it never touches the disk. Every request runs on its own virtual thread,
+// so hundreds of employees checking their payslip at the same time don't wait for a thread pool.
+// Computed payslips are kept in a PayslipCache; /health also shows its hit, miss and eviction counts.
+class PayrollServer {
+    private final PayrollData data;
+    private final int defaultYear;
+    final PayslipCache cache;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    PayrollServer(PayrollData data, int defaultYear) {
+        this(data, defaultYear, new PayslipCache(data, PayrollConfig.DEFAULT_CACHE_SIZE));
+    }
+
+    PayrollServer(PayrollData data, int defaultYear, PayslipCache cache) {
+        this.data = data;
+        this.defaultYear = defaultYear;
+        this.cache = cache;
+
+        // Attendance from the snapshot or a PayrollStore is looked up the first time an employee
+        // is asked for, so everyone is looked up now instead of during the first requests
+        for (String employeeId : data.attendanceData.employeeIds()) {
+            data.attendanceData.get(employeeId);
+        }
+    }
+
+    // Usage: serve [port]   (the port can also be set with -Dmotorph.port)
+    static void run(PayrollConfig config, String[] args) {
+        int port = config.port;
+        if (args.length > 1) {
+            try {
+                port = Integer.parseInt(args[1].trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Usage: serve [port]");
+                return;
+            }
+        }
+
+        PayrollData data = PayrollData.load(config.employeeFile, config.attendanceFile);
+        data.compact();
+        PayslipCache cache = new PayslipCache(data, config.cacheSize);
+        if (config.warmUpMonth != null) {
+            long startNanos = System.nanoTime();
+            cache.warmUp(config.warmUpMonth);
+            System.out.printf("Warmed the payslip cache with %d payslips for %s in %.3f s%n",
+                    cache.size(), config.warmUpMonth, (System.nanoTime() - startNanos) / 1e9);
+        }
+        PayrollServer payrollServer = new PayrollServer(data, config.year, cache);
+        try {
+            int boundPort = payrollServer.start(port);
+            System.out.println("Serving payslips for " + data.employeeData.size() + " employees on http://localhost:" + boundPort + "/");
+            Runtime.getRuntime().addShutdownHook(new Thread(payrollServer::stop));
+        } catch (IOException e) {
+            System.err.println("Error starting payslip server on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    // Starts listening on the loopback address only, the server is not meant to be reached from other machines
+    // Port 0 picks a free port; the port that was actually used is returned
+    int start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                send(exchange, 405, PayrollJson.error("Only GET is supported"));
+                return;
+            }
+            URI uri = exchange.getRequestURI();
+            String[] parts = uri.getPath().split("/");
+            // parts[0] is the empty text before the first "/"
+            if (parts.length == 2 && parts[1].equals("health")) {
+                send(exchange, 200, "{\"status\":\"ok\",\"employees\":" + data.employeeData.size()
+                        + ",\"cache\":{\"size\":" + cache.size() + ",\"hits\":" + cache.hits.sum()
+                        + ",\"misses\":" + cache.misses.sum() + ",\"evictions\":" + cache.evictions.sum() + "}}");
+            } else if (parts.length == 3 && parts[1].equals("employees")) {
+                Employee employee = data.employeeData.get(parts[2]);
+                if (employee == null) {
+                    send(exchange, 404, PayrollJson.error("Employee not found: " + parts[2]));
+                } else {
+                    send(exchange, 200, PayrollJson.employee(employee));
+                }
+            } else if (parts.length == 4 && parts[1].equals("payslips")) {
+                payslip(exchange, parts[2], parts[3], uri.getQuery());
+            } else {
+                send(exchange, 404, PayrollJson.error("Unknown path: " + uri.getPath()));
+            }
+        } catch (RuntimeException e) {
+            send(exchange, 500, PayrollJson.error(String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void payslip(HttpExchange exchange, String employeeId, String monthText, String query) throws IOException {
+        Employee employee = data.employeeData.get(employeeId);
+        if (employee == null) {
+            send(exchange, 404, PayrollJson.error("Employee not found: " + employeeId));
+            return;
+        }
+
+        Month month;
+        int year = defaultYear;
+        try {
+            month = parseMonth(monthText);
+            String yearText = queryValue(query, "year");
+            if (yearText != null) {
+                year = Integer.parseInt(yearText);
+            }
+        } catch (DateTimeException | IllegalArgumentException e) {
+            send(exchange, 400, PayrollJson.error("Invalid month or year: " + e.getMessage()));
+            return;
+        }
+
+        MonthlyPayroll payroll = cache.payslip(employee, year, month);
+        long outputStart = PayrollMetrics.start();
+        String json = PayrollJson.payslip(payroll);
+        PayrollMetrics.phase(PayrollMetrics.Phase.OUTPUT, outputStart);
+        send(exchange, 200, json);
+    }
+
+    // Accepts "june", "JUNE" or "6"
+    static Month parseMonth(String text) {
+        String value = text.trim();
+        if (!value.isEmpty() && Character.isDigit(value.charAt(0))) {
+            return Month.of(Integer.parseInt(value));
+        }
+        return Month.valueOf(value.toUpperCase());
+    }
+
+    // Returns the value of name=value in the query string, or null
+    private static String queryValue(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                return pair.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.zip.CRC32C;
+
+// This class saves the parsed employees and attendance in a binary snapshot file,
+// so the next startup can skip parsing both CSVs when nothing changed
+//
+// The snapshot is written next to the attendance file as payroll_snapshot.bin:
+//   header:     magic "MPHS", format version
+//   sources:    size, last modified time and CRC32C of employee_data.csv and attendance_record.csv
+//   employees:  count, then one column per Employee field (all IDs, then all last names, ...)
+//   directory:  count, then per employee with attendance: ID, file offset of its block, record count
+//   blocks:     per employee: epochDays int[n], workedPrefix long[n + 1], latePrefix long[n + 1]
+//
+// It is only used when the size, time and CRC of both CSVs still match, otherwise the CSVs are
+// parsed again and a new snapshot is written. The employee table and directory are read at startup,
+// but an employee's attendance block is only mapped the first time that employee is looked up,
+// so the interactive lookup does not have to read the whole attendance history.
+class PayrollSnapshot {
+
+    static final int MAGIC = 0x4D504853;  // "MPHS"
+    static final int VERSION = 2;  // 2: status, position and supervisor were added
+    static final String FILE_NAME = "payroll_snapshot.bin";
+
+    static PayrollData loadOrBuild(String employeeFile, String attendanceFile) {
+        Path snapshotFile = snapshotPath(attendanceFile);
+
+        long[] employeeSource;
+        long[] attendanceSource;
+        try {
+            employeeSource = fingerprint(Path.of(employeeFile));
+            attendanceSource = fingerprint(Path.of(attendanceFile));
+        } catch (IOException | InvalidPathException e) {
+            // One of the CSVs can't be read, let the loaders report it the usual way
+            return PayrollData.loadFromCsv(employeeFile, attendanceFile);
+        }
+
+        if (Files.exists(snapshotFile)) {
+            try {
+                PayrollData data = read(snapshotFile, employeeSource, attendanceSource);
+                if (data != null) {
+                    return data;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring unreadable snapshot " + snapshotFile + ": " + e.getMessage());
+            }
+        }
+
+        PayrollData data = PayrollData.loadFromCsv(employeeFile, attendanceFile);
+        if (!data.loadedCleanly()) {
+            // A partial load must not be saved, or the next run would read the partial data
+            // from the snapshot without trying the CSVs again
+            System.err.println("Not writing snapshot " + snapshotFile + ": " + data.loadErrors.get(0));
+            return data;
+        }
+        try {
+            write(snapshotFile, data, employeeSource, attendanceSource);
+        } catch (IOException e) {
+            System.err.println("Could not write snapshot " + snapshotFile + ": " + e.getMessage());
+        }
+        return data;
+    }
+
+    static Path snapshotPath(String attendanceFile) {
+        Path parent = Path.of(attendanceFile).toAbsolutePath().getParent();
+        return parent.resolve(FILE_NAME);
+    }
+
+    // {size, last modified millis, CRC32C of the whole content}
+    static long[] fingerprint(Path file) throws IOException {
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(MappedAttendanceParser.WINDOW_SIZE, size - position);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                position += length;
+            }
+        }
+        return new long[] {size, modified, crc.getValue()};
+    }
+
+    // Writes to a temporary file first and then renames it, so a crash never leaves half a snapshot
+    static void write(Path snapshotFile, PayrollData data, long[] employeeSource, long[] attendanceSource) throws IOException {
+        Path tempFile = snapshotFile.resolveSibling(FILE_NAME + ".tmp");
+        List<Employee> employees = new ArrayList<>(data.employeeData.values());
+        List<String> attendanceIds = new ArrayList<>(data.attendanceData.employeeIds());
+        Collections.sort(attendanceIds);
+
+        byte[][] attendanceIdBytes = new byte[attendanceIds.size()][];
+        for (int i = 0; i < attendanceIds.size(); i++) {
+            attendanceIdBytes[i] = attendanceIds.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (long value : employeeSource) {
+                out.writeLong(value);
+            }
+            for (long value : attendanceSource) {
+                out.writeLong(value);
+            }
+
+            // Employee table, one column at a time
+            out.writeInt(employees.size());
+            writeStringColumn(out, employees, e -> e.empId);
+            writeStringColumn(out, employees, e -> e.lastName);
+            writeStringColumn(out, employees, e -> e.firstName);
+            writeStringColumn(out, employees, e -> e.birthday);
+            writeStringColumn(out, employees, e -> e.status);
+            writeStringColumn(out, employees, e -> e.position);
+            writeStringColumn(out, employees, e -> e.supervisor);
+            writeDoubleColumn(out, employees, e -> e.hourlyRate);
+            writeDoubleColumn(out, employees, e -> e.riceSubsidy);
+            writeDoubleColumn(out, employees, e -> e.phoneAllowance);
+            writeDoubleColumn(out, employees, e -> e.clothingAllowance);
+            writeDoubleColumn(out, employees, e -> e.basicSalary);
+
+            // The directory has a fixed size per employee, so the offset of the first block is known
+            long directorySize = 4;
+            for (byte[] id : attendanceIdBytes) {
+                directorySize += 4 + id.length + 8 + 4;
+            }
+            long blockOffset = out.size() + directorySize;
+
+            out.writeInt(attendanceIds.size());
+            for (int i = 0; i < attendanceIds.size(); i++) {
+                int count = data.attendanceData.get(attendanceIds.get(i)).size();
+                out.writeInt(attendanceIdBytes[i].length);
+                out.write(attendanceIdBytes[i]);
+                out.writeLong(blockOffset);
+                out.writeInt(count);
+                blockOffset += 4L * count + 8L * (count + 1) * 2;
+            }
+
+            for (String id : attendanceIds) {
+                EmployeeAttendance attendance = data.attendanceData.get(id);
+                int count = attendance.size();
+                for (int i = 0; i < count; i++) {
+                    out.writeInt(attendance.epochDay(i));
+                }
+                for (int i = 0; i <= count; i++) {
+                    out.writeLong(attendance.workedBefore(i));
+                }
+                for (int i = 0; i <= count; i++) {
+                    out.writeLong(attendance.lateBefore(i));
+                }
+            }
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeStringColumn(DataOutputStream out, List<Employee> employees,
+                                          Function<Employee, String> column) throws IOException {
+        for (Employee employee : employees) {
+            writeString(out, column.apply(employee));
+        }
+    }
+
+    private static void writeDoubleColumn(DataOutputStream out, List<Employee> employees,
+                                          ToDoubleFunction<Employee> column) throws IOException {
+        for (Employee employee : employees) {
+            out.writeDouble(column.applyAsDouble(employee));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Returns null when the snapshot was written for other versions of the CSVs
+    static PayrollData read(Path snapshotFile, long[] employeeSource, long[] attendanceSource) throws IOException {
+        FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ);
+        boolean keepOpen = false;
+        try {
+            // The header, employee table and directory are at the start of the file.
+            // Map them in one piece, the attendance blocks are mapped later one at a time.
+            long size = channel.size();
+            MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MappedAttendanceParser.WINDOW_SIZE));
+            if (head.remaining() < 8 + 48 || head.getInt() != MAGIC || head.getInt() != VERSION) {
+                return null;
+            }
+            for (long value : employeeSource) {
+                if (head.getLong() != value) {
+                    return null;
+                }
+            }
+            for (long value : attendanceSource) {
+                if (head.getLong() != value) {
+                    return null;
+                }
+            }
+
+            int employeeCount = head.getInt();
+            String[] empId = readStrings(head, employeeCount);
+            String[] lastName = readStrings(head, employeeCount);
+            String[] firstName = readStrings(head, employeeCount);
+            String[] birthday = readStrings(head, employeeCount);
+            String[] status = readStrings(head, employeeCount);
+            String[] position = readStrings(head, employeeCount);
+            String[] supervisor = readStrings(head, employeeCount);
+            double[] hourlyRate = readDoubles(head, employeeCount);
+            double[] riceSubsidy = readDoubles(head, employeeCount);
+            double[] phoneAllowance = readDoubles(head, employeeCount);
+            double[] clothingAllowance = readDoubles(head, employeeCount);
+            double[] basicSalary = readDoubles(head, employeeCount);
+
+            HashMap<String, Employee> employeeMap = new HashMap<>();
+            for (int i = 0; i < employeeCount; i++) {
+                employeeMap.put(empId[i], new Employee(empId[i], lastName[i], firstName[i], birthday[i],
+                        status[i], position[i], supervisor[i], hourlyRate[i], riceSubsidy[i], phoneAllowance[i], clothingAllowance[i], basicSalary[i]));
+            }
+
+            int attendanceCount = head.getInt();
+            HashMap<String, long[]> directory = new HashMap<>();
+            for (int i = 0; i < attendanceCount; i++) {
+                String id = readString(head);
+                long offset = head.getLong();
+                int count = head.getInt();
+                directory.put(id, new long[] {offset, count});
+            }
+
+            AttendanceIndex attendance = new AttendanceIndex(Collections.unmodifiableSet(directory.keySet()),
+                    id -> readAttendance(channel, directory.get(id)));
+            keepOpen = true;
+            return new PayrollData(employeeMap, attendance);
+        } finally {
+            // The channel stays open for the lazy attendance reads when the snapshot is used
+            if (!keepOpen) {
+                channel.close();
+            }
+        }
+    }
+
+    // Maps the block of one employee and copies it into an EmployeeAttendance
+    private static EmployeeAttendance readAttendance(FileChannel channel, long[] entry) {
+        long offset = entry[0];
+        int count = (int) entry[1];
+        try {
+            MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * count + 16L * (count + 1));
+            int[] epochDays = new int[count];
+            long[] workedPrefix = new long[count + 1];
+            long[] latePrefix = new long[count + 1];
+            block.asIntBuffer().get(epochDays);
+            block.position(4 * count);
+            block.asLongBuffer().get(workedPrefix);
+            block.position(4 * count + 8 * (count + 1));
+            block.asLongBuffer().get(latePrefix);
+            return new EmployeeAttendance(epochDays, workedPrefix, latePrefix);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, int count) {
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = readString(buffer);
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + 8 * count);
+        return values;
+    }
+}
@@ -0,0 +1,201 @@
+package com.mycompany.motorphpayroll;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+// This class keeps every employee and all their attendance in a few big primitive arrays
+// Each employee ID gets a number from 0 to size()-1 (in ID order), and every field is one array
+// indexed by that number ("struct of arrays"):
+//     hourlyRates[e], basicSalaries[e], lastNames[e], ...
+// All attendance records are in three arrays shared by everyone, sorted by employee and then by date.
+// Employee e's records are the slice [attendanceStart[e], attendanceStart[e + 1]):
+//     epochDays[i]     = the date of record i
+//     workedPrefix[i]  = minutes worked in records 0 .. i-1 (of the whole store)
+//     latePrefix[i]    = late minutes in records 0 .. i-1
+// Compared to a map of employees and one EmployeeAttendance (three arrays) per employee, this has
+// no per-employee objects or array headers, and the whole company is one block of memory that
+// the GC never has to trace into. Code that works on the whole company (the batch) loops over the
+// numbers, so an employee ID is only hashed once, when the store is built.
+// IDs that only appear in the attendance file get a number too, with no employee fields (hasEmployee is false).
+final class PayrollStore {
+    private final String[] employeeIds;
+    private final int[] idSlots;  // open addressing: index + 1 of the employee whose ID hashes there, 0 = empty
+
+    private final boolean[] hasEmployee;
+    private final String[] lastNames;
+    private final String[] firstNames;
+    private final String[] birthdays;
+    private final String[] statuses;
+    private final String[] positions;
+    private final String[] supervisors;
+    private final double[] hourlyRates;
+    private final double[] riceSubsidies;
+    private final double[] phoneAllowances;
+    private final double[] clothingAllowances;
+    private final double[] basicSalaries;
+
+    private final int[] attendanceStart;
+    private final int[] epochDays;
+    private final long[] workedPrefix;
+    private final long[] latePrefix;
+
+    private PayrollStore(String[] employeeIds, int totalRecords) {
+        int n = employeeIds.length;
+        this.employeeIds = employeeIds;
+        this.idSlots = new int[Integer.highestOneBit(Math.max(1, n) * 2) * 2];
+        for (int e = 0; e < n; e++) {
+            int mask = idSlots.length - 1;
+            int slot = mix(employeeIds[e].hashCode()) & mask;
+            while (idSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            idSlots[slot] = e + 1;
+        }
+
+        hasEmployee = new boolean[n];
+        lastNames = new String[n];
+        firstNames = new String[n];
+        birthdays = new String[n];
+        statuses = new String[n];
+        positions = new String[n];
+        supervisors = new String[n];
+        hourlyRates = new double[n];
+        riceSubsidies = new double[n];
+        phoneAllowances = new double[n];
+        clothingAllowances = new double[n];
+        basicSalaries = new double[n];
+
+        attendanceStart = new int[n + 1];
+        epochDays = new int[totalRecords];
+        workedPrefix = new long[totalRecords + 1];
+        latePrefix = new long[totalRecords + 1];
+    }
+
+    // Copies the employees and the attendance into a new store
+    // Every employee's attendance is copied on its own, so this runs in parallel
+    static PayrollStore of(Map<String, Employee> employees, AttendanceIndex attendance) {
+        TreeSet<String> ids = new TreeSet<>(employees.keySet());
+        ids.addAll(attendance.employeeIds());
+        String[] employeeIds = ids.toArray(new String[0]);
+        int n = employeeIds.length;
+
+        EmployeeAttendance[] sources = new EmployeeAttendance[n];
+        int[] starts = new int[n + 1];
+        for (int e = 0; e < n; e++) {
+            sources[e] = attendance.get(employeeIds[e]);
+            long end = (long) starts[e] + (sources[e] == null ? 0 : sources[e].size());
+            if (end > Integer.MAX_VALUE - 1) {
+                throw new IllegalArgumentException("Too many attendance records for one store: " + end);
+            }
+            starts[e + 1] = (int) end;
+        }
+
+        PayrollStore store = new PayrollStore(employeeIds, starts[n]);
+        System.arraycopy(starts, 0, store.attendanceStart, 0, n + 1);
+        for (int e = 0; e < n; e++) {
+            Employee employee = employees.get(employeeIds[e]);
+            if (employee != null) {
+                store.hasEmployee[e] = true;
+                store.lastNames[e] = employee.lastName;
+                store.firstNames[e] = employee.firstName;
+                store.birthdays[e] = employee.birthday;
+                store.statuses[e] = employee.status;
+                store.positions[e] = employee.position;
+                store.supervisors[e] = employee.supervisor;
+                store.hourlyRates[e] = employee.hourlyRate;
+                store.riceSubsidies[e] = employee.riceSubsidy;
+                store.phoneAllowances[e] = employee.phoneAllowance;
+                store.clothingAllowances[e] = employee.clothingAllowance;
+                store.basicSalaries[e] = employee.basicSalary;
+            }
+        }
+
+        // Copy the records; the running totals are per employee for now
+        IntStream.range(0, n).parallel().forEach(e -> {
+            EmployeeAttendance source = sources[e];
+            if (source == null) {
+                return;
+            }
+            int start = starts[e];
+            for (int i = 0; i < source.size(); i++) {
+                store.epochDays[start + i] = source.epochDay(i);
+                store.workedPrefix[start + i + 1] = source.workedBefore(i + 1);
+                store.latePrefix[start + i + 1] = source.lateBefore(i + 1);
+            }
+        });
+        // ...then carried on from one employee to the next, so one array holds the totals of everyone
+        for (int e = 1; e < n; e++) {
+            long workedCarry = store.workedPrefix[starts[e]];
+            long lateCarry = store.latePrefix[starts[e]];
+            for (int i = starts[e] + 1; i <= starts[e + 1]; i++) {
+                store.workedPrefix[i] += workedCarry;
+                store.latePrefix[i] += lateCarry;
+            }
+        }
+        return store;
+    }
+
+    int size() {
+        return employeeIds.length;
+    }
+
+    // Returns the number of the employee with this ID, or -1
+    int indexOf(String employeeId) {
+        int mask = idSlots.length - 1;
+        int slot = mix(employeeId.hashCode()) & mask;
+        while (idSlots[slot] != 0) {
+            int e = idSlots[slot] - 1;
+            if (employeeIds[e].equals(employeeId)) {
+                return e;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    String employeeId(int e) {
+        return employeeIds[e];
+    }
+
+    // False for IDs that only appear in the attendance file
+    boolean hasEmployee(int e) {
+        return hasEmployee[e];
+    }
+
+    // A new Employee with the fields of employee e, for code that prints or returns one
+    Employee employee(int e) {
+        if (!hasEmployee[e]) {
+            return null;
+        }
+        return new Employee(employeeIds[e], lastNames[e], firstNames[e], birthdays[e], statuses[e], positions[e],
+                supervisors[e], hourlyRates[e], riceSubsidies[e], phoneAllowances[e], clothingAllowances[e], basicSalaries[e]);
+    }
+
+    // A view of employee e's slice of the shared arrays, or null if the employee has no attendance
+    EmployeeAttendance attendance(int e) {
+        int start = attendanceStart[e];
+        int end = attendanceStart[e + 1];
+        return start == end ? null : new EmployeeAttendance(epochDays, workedPrefix, latePrefix, start, end);
+    }
+
+    // An AttendanceIndex that reads from this store, so code that looks employees up by ID still works
+    AttendanceIndex attendanceIndex() {
+        Set<String> idsWithAttendance = new HashSet<>();
+        for (int e = 0; e < employeeIds.length; e++) {
+            if (attendanceStart[e] != attendanceStart[e + 1]) {
+                idsWithAttendance.add(employeeIds[e]);
+            }
+        }
+        return new AttendanceIndex(idsWithAttendance, id -> attendance(indexOf(id)));
+    }
+
+    int attendanceRecords() {
+        return epochDays.length;
+    }
+
+    // Spreads the bits of String.hashCode, so IDs that differ only in the last digit don't cluster
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,309 @@
+package com.mycompany.motorphpayroll;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+// This class keeps a live payroll while punches are appended to attendance_record.csv
+// It remembers how far into the file it has read (the offset). When the file grows, only the
+// new complete lines after the offset are parsed and added to the attendance index, and only
+// the employees in those lines have their payroll recomputed.
+// The offset is saved in a checkpoint file after every batch. After a crash or a restart, the
+// file is loaded up to the checkpoint and everything after it is handled as new punches.
+// The company's cost per team (CostRollup) is kept for every month that got new punches: the first
+// time a month gets punches everyone is computed once, after that only the recomputed employees'
+// differences are added up the supervisor chain.
+class PayrollWatcher {
+
+    // How long to wait for a file event before checking the file size anyway
+    // (some file systems, like network drives, don't send events reliably)
+    private static final long POLL_SECONDS = 2;
+
+    // The checkpoint keeps the offset and a CRC of the bytes just before it, so a file that was
+    // replaced by a different one of the same or larger size is not tailed from the wrong place
+    // The same CRC is checked again on every poll, for a file replaced while the watch is running
+    static final int CHECK_BYTES = 256;
+
+    private final String attendanceFile;
+    private final Path checkpointFile;
+    private final PayrollData data;
+    private final OrgChart chart;
+    private final Map<YearMonth, CostRollup> rollups = new HashMap<>();
+    private long offset;
+    // CRC of the CHECK_BYTES bytes just before the offset, when they were read
+    private long offsetCrc;
+
+    PayrollWatcher(String employeeFile, String attendanceFile) {
+        this.attendanceFile = attendanceFile;
+        this.checkpointFile = Path.of(attendanceFile + ".checkpoint");
+        this.data = new PayrollData(MotorPHPayroll.loadEmployeeData(employeeFile), null);
+        this.data.contributionRules = ContributionRules.load(PayrollData.contributionTablesPath(employeeFile));
+        this.chart = OrgChart.of(data.employeeData);
+    }
+
+    // Usage: watch   (runs until the program is stopped)
+    static void run(String employeeFile, String attendanceFile) {
+        PayrollWatcher watcher = new PayrollWatcher(employeeFile, attendanceFile);
+        try {
+            watcher.start();
+            watcher.watch();
+        } catch (IOException e) {
+            System.err.println("Error watching attendance file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Loads the file up to the checkpoint (or up to the last full line if there is no checkpoint),
+    // then handles anything written after the checkpoint as new punches
+    void start() throws IOException {
+        Path file = Path.of(attendanceFile);
+        long size = Files.size(file);
+        long checkpoint = readCheckpoint(file, size);
+        long baseEnd = checkpoint >= 0 ? checkpoint : lastLineEnd(file, size);
+
+        data.attendanceData = ParallelAttendanceLoader.load(attendanceFile, Runtime.getRuntime().availableProcessors(), baseEnd);
+        data.dataChanged();
+        offset = baseEnd;
+        offsetCrc = crcBefore(file, offset);
+        System.out.println("Loaded attendance up to byte " + offset + (checkpoint >= 0 ? " (from checkpoint)" : ""));
+
+        readNewLines();
+    }
+
+    void watch() throws IOException, InterruptedException {
+        Path file = Path.of(attendanceFile).toAbsolutePath();
+        Path directory = file.getParent();
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            System.out.println("Watching " + file + " for new punches (Ctrl+C to stop)");
+            while (true) {
+                WatchKey key = watchService.poll(POLL_SECONDS, TimeUnit.SECONDS);
+                if (key != null) {
+                    // Any event in the folder just means "go and look"; the file size decides what to do
+                    key.pollEvents();
+                    key.reset();
+                }
+                readNewLines();
+            }
+        }
+    }
+
+    // Parses the complete lines between the offset and the end of the file
+    void readNewLines() throws IOException {
+        Path file = Path.of(attendanceFile);
+        if (!Files.exists(file)) {
+            return;
+        }
+        long size = Files.size(file);
+        if (size < offset || crcBefore(file, offset) != offsetCrc) {
+            // The file got shorter, or the bytes before the offset changed, so it was replaced or
+            // rotated: start again from the beginning
+            System.out.println(size < offset ? "Attendance file was truncated, reloading it"
+                    : "Attendance file was replaced, reloading it");
+            offset = 0;
+            offsetCrc = crcBefore(file, 0);
+            data.attendanceData = new AttendanceIndex.Builder().build();
+            data.dataChanged();
+            rollups.clear();
+            Files.deleteIfExists(checkpointFile);
+        }
+        if (size == offset) {
+            return;
+        }
+
+        AttendanceIndex.Builder newRows = new AttendanceIndex.Builder();
+        List<String> skippedRows = new ArrayList<>();
+        long newOffset;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long start = offset == 0 ? MappedAttendanceParser.skipHeader(channel, size) : offset;
+            long end = lastLineEnd(channel, start, size);
+            if (end <= start) {
+                // Only part of a line has been written so far, wait for the rest
+                return;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            try {
+                MappedAttendanceParser.parseRange(buffer, 0, (int) (end - start), newRows,
+                        new MappedAttendanceParser.IdCache(), skippedRows);
+            } catch (IllegalArgumentException e) {
+                // A broken row would stop a full load, but here the file keeps growing: if the watch
+                // stopped at the row, every poll would fail on it again and no later punch would count.
+                // So the batch is parsed again one line at a time, leaving out only the broken rows
+                newRows = new AttendanceIndex.Builder();
+                skippedRows.clear();
+                parseLineByLine(buffer, (int) (end - start), start, newRows, skippedRows);
+            }
+            newOffset = end;
+        }
+
+        for (String message : skippedRows) {
+            System.out.println(message);
+        }
+        data.attendanceData.append(newRows);
+        data.dataChanged();
+        offset = newOffset;
+        offsetCrc = crcBefore(file, offset);
+        writeCheckpoint();
+        printUpdatedPayroll(newRows);
+    }
+
+    // Parses buffer[0, end) line by line; a line that throws is reported, counted and left out
+    private static void parseLineByLine(ByteBuffer buffer, int end, long fileOffset, AttendanceIndex.Builder newRows,
+                                        List<String> skippedRows) {
+        MappedAttendanceParser.IdCache ids = new MappedAttendanceParser.IdCache();
+        int lineStart = 0;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            try {
+                MappedAttendanceParser.parseRange(buffer, lineStart, lineEnd, newRows, ids, skippedRows);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping invalid attendance row at byte " + (fileOffset + lineStart) + ": " + e.getMessage());
+                PayrollMetrics.skipped(PayrollMetrics.SkipReason.MALFORMED_ROW);
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    // Recomputes every payroll month that includes a new punch, for the employees that had new punches
+    // A punch in the first days of a month can be in the 4th week of the month before, then both are redone
+    private void printUpdatedPayroll(AttendanceIndex.Builder newRows) {
+        long outputStart = PayrollMetrics.start();
+        List<String> employeeIds = new ArrayList<>(newRows.employeeIds());
+        Collections.sort(employeeIds);
+        TreeSet<YearMonth> changedMonths = new TreeSet<>();
+        for (String employeeId : employeeIds) {
+            Employee employee = data.employeeData.get(employeeId);
+            if (employee == null) {
+                System.out.println("New punches for unknown Employee ID: " + employeeId);
+                continue;
+            }
+
+            TreeSet<YearMonth> months = new TreeSet<>();
+            for (int day : newRows.epochDays(employeeId)) {
+                months.addAll(MotorPHPayroll.payrollMonthsOf(LocalDate.ofEpochDay(day)));
+            }
+            EmployeeAttendance attendance = data.attendanceData.get(employeeId);
+            for (YearMonth month : months) {
+                // Running totals for the whole calendar month, then the four-week payroll
+                double monthHours = attendance.hoursWorked(month.atDay(1), month.atEndOfMonth());
+                double monthLate = attendance.deductedHours(month.atDay(1), month.atEndOfMonth());
+                MonthlyPayroll payroll = MotorPHPayroll.computeMonthlyPayroll(employee, attendance,
+                        data.contributionRules, month.getYear(), month.getMonth());
+                System.out.printf("%s %s, %s - %s %d: hours %.2f, late %.2f, total net %.2f, final net %.2f%n",
+                        employee.empId, employee.lastName, employee.firstName,
+                        month.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH), month.getYear(),
+                        monthHours, monthLate, Money.pesos(payroll.totalNet), Money.pesos(payroll.finalNet));
+
+                CostRollup rollup = rollups.computeIfAbsent(month, this::computeRollup);
+                rollup.update(chart.indexOf(employeeId), CostRollup.costOf(payroll));
+                changedMonths.add(month);
+            }
+        }
+        for (YearMonth month : changedMonths) {
+            CostRollup rollup = rollups.get(month);
+            System.out.printf("Company cost for %s %d: gross %.2f, contributions %.2f, allowances %.2f, final net %.2f%n",
+                    month.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH), month.getYear(),
+                    Money.pesos(rollup.companyTotal(CostRollup.Cost.GROSS)),
+                    Money.pesos(rollup.companyTotal(CostRollup.Cost.CONTRIBUTIONS)),
+                    Money.pesos(rollup.companyTotal(CostRollup.Cost.ALLOWANCES)),
+                    Money.pesos(rollup.companyTotal(CostRollup.Cost.FINAL_NET)));
+        }
+        PayrollMetrics.phase(PayrollMetrics.Phase.OUTPUT, outputStart);
+    }
+
+    // Everyone's cost for the month with the attendance loaded so far
+    private CostRollup computeRollup(YearMonth month) {
+        return CostRollup.build(chart, month.getYear(), month.getMonth(), month.getMonth(), e -> {
+            Employee employee = chart.employee(e);
+            return CostRollup.costOf(MotorPHPayroll.computeMonthlyPayroll(employee,
+                    data.attendanceData.get(employee.empId), data.contributionRules, month.getYear(), month.getMonth()));
+        });
+    }
+
+    // Returns the saved offset, or -1 if there is no usable checkpoint for this file
+    private long readCheckpoint(Path file, long size) {
+        if (!Files.exists(checkpointFile)) {
+            return -1;
+        }
+        try {
+            Properties properties = new Properties();
+            try (var reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            long savedOffset = Long.parseLong(properties.getProperty("offset"));
+            long savedCrc = Long.parseLong(properties.getProperty("crc"));
+            if (savedOffset > size || savedCrc != crcBefore(file, savedOffset)) {
+                System.out.println("Checkpoint does not match the attendance file, loading the whole file");
+                return -1;
+            }
+            return savedOffset;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable checkpoint " + checkpointFile + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    // Written to a temporary file and renamed, so a crash leaves either the old or the new checkpoint
+    private void writeCheckpoint() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("offset", Long.toString(offset));
+        properties.setProperty("crc", Long.toString(offsetCrc));
+        Path tempFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (var writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Attendance watch checkpoint");
+        }
+        Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // CRC32C of the CHECK_BYTES bytes just before the given offset
+    static long crcBefore(Path file, long position) throws IOException {
+        long start = Math.max(0, position - CHECK_BYTES);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (position - start));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+                // keep reading until the buffer is full
+            }
+        }
+        buffer.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    private static long lastLineEnd(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return lastLineEnd(channel, 0, size);
+        }
+    }
+
+    // Returns the offset just after the last '\n' in [start, size), or start if there is none
+    private static long lastLineEnd(FileChannel channel, long start, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long end = size;
+        while (end > start) {
+            long blockStart = Math.max(start, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - blockStart));
+            channel.read(buffer, blockStart);
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return blockStart + i + 1;
+                }
+            }
+            end = blockStart;
+        }
+        return start;
+    }
+}
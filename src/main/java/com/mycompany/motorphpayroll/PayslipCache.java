@@ -0,0 +1,183 @@
+package com.mycompany.motorphpayroll;
+
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// This class keeps the most recently used payslips so the same (employee, month) is not
+// recomputed for every request on payday
+// The key is employee ID + year + month + the data version of PayrollData. The version changes
+// whenever the employees or the attendance are reloaded or appended to, so a payslip computed
+// from old data can never be returned: its key simply no longer matches.
+// The entries are split over STRIPES small LRU maps, each with its own lock, so requests for
+// different employees rarely wait for each other. A ReentrantLock is used instead of synchronized
+// because a virtual thread that blocks inside synchronized also blocks its carrier thread.
+class PayslipCache {
+    private static final int STRIPES = 16;
+
+    private final PayrollData data;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // Counted with LongAdder so the counters don't become the point every request fights over
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+
+    // The version the entries were computed for; when the data changes, all entries are dropped at once
+    private volatile long cachedVersion;
+
+    PayslipCache(PayrollData data, int maxEntries) {
+        this.data = data;
+        this.cachedVersion = data.dataVersion();
+        int stripeCapacity = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    // Returns the cached payslip, or computes it and keeps it
+    // Two threads that miss on the same key at the same time both compute it; the results are
+    // identical, and not holding the lock while computing keeps other requests moving
+    MonthlyPayroll payslip(Employee employee, int year, Month month) {
+        long version = data.dataVersion();
+        if (version != cachedVersion) {
+            clear();
+            cachedVersion = version;
+        }
+
+        Key key = new Key(employee.empId, year, month, version);
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        MonthlyPayroll payroll = stripe.get(key);
+        if (payroll != null) {
+            hits.increment();
+            return payroll;
+        }
+
+        misses.increment();
+        payroll = MotorPHPayroll.computeMonthlyPayroll(employee, data.attendanceData.get(employee.empId),
+                data.contributionRules, year, month);
+        stripe.put(key, payroll);
+        return payroll;
+    }
+
+    // Computes one month for every employee (on all the cores) and puts it in the cache,
+    // so the first requests on payday are already hits
+    void warmUp(YearMonth yearMonth) {
+        long version = data.dataVersion();
+        PayrollStore store = data.store();
+        List<MonthlyPayroll> results = store != null
+                ? PayrollBatch.computeAll(store, data.contributionRules, yearMonth.getYear(), yearMonth.getMonth(), yearMonth.getMonth())
+                : PayrollBatch.computeAll(data.employeeData, data.attendanceData,
+                        data.contributionRules, yearMonth.getYear(), yearMonth.getMonth(), yearMonth.getMonth());
+        for (MonthlyPayroll payroll : results) {
+            Key key = new Key(payroll.employee.empId, payroll.year, payroll.month, version);
+            stripes[(key.hashCode() & 0x7fffffff) % STRIPES].put(key, payroll);
+        }
+    }
+
+    void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    // One LRU map: a LinkedHashMap in access order drops its least recently used entry when full
+    private class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<Key, MonthlyPayroll> entries;
+
+        Stripe(int capacity) {
+            entries = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, MonthlyPayroll> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        MonthlyPayroll get(Key key) {
+            lock.lock();
+            try {
+                return entries.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(Key key, MonthlyPayroll payroll) {
+            lock.lock();
+            try {
+                entries.put(key, payroll);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Key {
+        final String employeeId;
+        final int year;
+        final Month month;
+        final long dataVersion;
+
+        Key(String employeeId, int year, Month month, long dataVersion) {
+            this.employeeId = employeeId;
+            this.year = year;
+            this.month = month;
+            this.dataVersion = dataVersion;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return year == key.year && month == key.month && dataVersion == key.dataVersion
+                    && employeeId.equals(key.employeeId);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = employeeId.hashCode();
+            hash = 31 * hash + year;
+            hash = 31 * hash + month.ordinal();
+            hash = 31 * hash + Long.hashCode(dataVersion);
+            return hash;
+        }
+    }
+}
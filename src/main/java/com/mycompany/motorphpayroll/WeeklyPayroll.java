@@ -0,0 +1,41 @@
+package com.mycompany.motorphpayroll;
+
+import java.time.LocalDate;
+
+// This class stores the computed pay of one employee for one Monday to Friday week
+// Amounts are in centavos and hours in minutes (see Money), so adding them up is exact;
+// they are only turned into pesos and hours when they are printed
+class WeeklyPayroll {
+    LocalDate startDate;      // Monday of the week
+    LocalDate endDate;        // Friday of the week
+    long workedMinutes;       // Minutes worked after the late deduction
+    long grossSalary;         // workedMinutes * hourly rate
+    long lateMinutes;         // Total late minutes deducted for the week
+    long lateDeduction;       // lateMinutes * hourly rate
+    long sss;                 // Only filled on the 4th week
+    long pagibig;             // Only filled on the 4th week
+    long philhealth;          // Only filled on the 4th week
+    long netPay;              // grossSalary minus all the deductions above
+
+    WeeklyPayroll(LocalDate startDate,
+                  LocalDate endDate,
+                  long workedMinutes,
+                  long grossSalary,
+                  long lateMinutes,
+                  long lateDeduction,
+                  long sss,
+                  long pagibig,
+                  long philhealth,
+                  long netPay) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.workedMinutes = workedMinutes;
+        this.grossSalary = grossSalary;
+        this.lateMinutes = lateMinutes;
+        this.lateDeduction = lateDeduction;
+        this.sss = sss;
+        this.pagibig = pagibig;
+        this.philhealth = philhealth;
+        this.netPay = netPay;
+    }
+}